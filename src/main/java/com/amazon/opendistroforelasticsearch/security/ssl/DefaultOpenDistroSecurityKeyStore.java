@@ -30,6 +30,7 @@
 
 package com.amazon.opendistroforelasticsearch.security.ssl;
 
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.handler.ssl.ApplicationProtocolConfig;
 import io.netty.handler.ssl.ClientAuth;
@@ -37,7 +38,9 @@ import io.netty.handler.ssl.OpenSsl;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslProvider;
+import io.netty.util.ReferenceCountUtil;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.nio.file.Files;
@@ -48,22 +51,38 @@ import java.security.AccessController;
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
+import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.security.Provider;
+import java.security.Security;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import javax.crypto.Cipher;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManager;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -73,13 +92,25 @@ import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CapabilityProbeCache;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CipherBenchmark;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.ExceptionUtils;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.KernelTls;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.KeyMaterialCache;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.OpenSslBuffers;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLCertificateHelper;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.ServerKeyMaterial;
 
-public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyStore {
+public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyStore, Closeable {
 
     private static final String DEFAULT_STORE_TYPE = "JKS";
+    private static final String PROBE_OPENSSL_HTTP_CIPHERS = "openssl.http.ciphers";
+    private static final String PROBE_OPENSSL_TRANSPORT_CIPHERS = "openssl.transport.ciphers";
+    private static final String PROBE_JDK_CIPHERS = "jdk.ciphers";
+    private static final String PROBE_JDK_PROTOCOLS = "jdk.protocols";
+    private static final List<String> PROBE_NAMES = Arrays.asList(PROBE_OPENSSL_HTTP_CIPHERS, PROBE_OPENSSL_TRANSPORT_CIPHERS,
+            PROBE_JDK_CIPHERS, PROBE_JDK_PROTOCOLS);
 
     private void printJCEWarnings() {
         try {
@@ -112,9 +143,17 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
     private List<String> enabledTransportProtocolsJDKProvider;
     private List<String> enabledTransportProtocolsOpenSSLProvider;
     
+    private final boolean cacheKeyMaterial;
+    private final boolean cipherBenchmarkEnabled;
+    private final Map<SslProvider, CipherBenchmark.Result> cipherBenchmarks = new EnumMap<>(SslProvider.class);
+    private CipherBenchmark.Result httpCipherBenchmark;
+    private CipherBenchmark.Result transportCipherBenchmark;
+    private boolean httpServerCipherOrder;
+    private boolean transportServerCipherOrder;
     private SslContext httpSslContext;
     private SslContext transportServerSslContext;
     private SslContext transportClientSslContext;
+    private boolean closed;
     private final Environment env;
 
     public DefaultOpenDistroSecurityKeyStore(final Settings settings, final Path configPath) {
@@ -160,7 +199,12 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
             sslTransportClientProvider = sslTransportServerProvider = null;
         }
 
+        cacheKeyMaterial = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_OPENSSL_KEY_MATERIAL_CACHE_ENABLED, false);
+        cipherBenchmarkEnabled = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_CIPHER_BENCHMARK_ENABLED, false);
+
+        final long probeStart = System.nanoTime();
         initEnabledSSLCiphers();
+        log.info("Cipher and protocol probes took {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - probeStart));
         initSSLConfig();
         printJCEWarnings();
 
@@ -168,6 +212,12 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
         log.info("TLS Transport Server Provider : {}", sslTransportServerProvider);
         log.info("TLS HTTP Provider             : {}", sslHTTPProvider);
 
+        if (KernelTls.isKernelSupported()) {
+            log.info("Kernel TLS (kTLS) is supported by the kernel but not used, TLS records are processed by the TLS providers above");
+        } else {
+            log.debug("Kernel TLS (kTLS) not supported by the kernel because of {}", KernelTls.kernelUnsupportedCause());
+        }
+
         log.debug("sslTransportClientProvider:{} with ciphers {}", sslTransportClientProvider,
                 getEnabledSSLCiphers(sslTransportClientProvider, false));
         log.debug("sslTransportServerProvider:{} with ciphers {}", sslTransportServerProvider,
@@ -230,6 +280,19 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
         return path;
     }
 
+    private List<String> resolveAll(final String propName) {
+
+        final List<String> paths = new ArrayList<>();
+
+        for (final String originalPath : settings.getAsList(propName, Collections.emptyList())) {
+            final String path = env == null ? originalPath : env.configFile().resolve(originalPath).toAbsolutePath().toString();
+            checkPath(path, propName);
+            paths.add(path);
+        }
+
+        return paths;
+    }
+
     private void initSSLConfig() {
 
         if (env == null) {
@@ -239,6 +302,17 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                     env.configFile().toAbsolutePath());
         }
 
+        //key- and truststores are parsed once even if http and transport share them and PEM keys are decrypted
+        //once for all contexts of a layer, then the contexts (key material conversion, OpenSSL setup) are built concurrently
+        final long start = System.nanoTime();
+        final Map<String, KeyStore> keyStores = new HashMap<>();
+
+        Callable<SslContext> transportServer = null;
+        Callable<SslContext> transportClient = null;
+        Callable<SslContext> http = null;
+        String transportError = null;
+        String httpError = null;
+
         if (transportSSLEnabled) {
 
             final String rawKeyStoreFilePath = settings
@@ -276,10 +350,7 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
 
                 try {
 
-                    final KeyStore ks = KeyStore.getInstance(keystoreType);
-                    ks.load(new FileInputStream(new File(keystoreFilePath)),
-                            (keystorePassword == null || keystorePassword.length() == 0) ? null
-                                    : keystorePassword.toCharArray());
+                    final KeyStore ks = loadKeyStore(keyStores, keystoreFilePath, keystoreType, keystorePassword);
 
                     final X509Certificate[] transportKeystoreCert = SSLCertificateHelper.exportServerCertChain(ks,
                             keystoreAlias);
@@ -308,10 +379,7 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                                 "No certificates found in " + keystoreFilePath + " with alias " + keystoreAlias);
                     }
 
-                    final KeyStore ts = KeyStore.getInstance(truststoreType);
-                    ts.load(new FileInputStream(new File(truststoreFilePath)),
-                            (truststorePassword == null || truststorePassword.length() == 0) ? null
-                                    : truststorePassword.toCharArray());
+                    final KeyStore ts = loadKeyStore(keyStores, truststoreFilePath, truststoreType, truststorePassword);
 
                     final X509Certificate[] trustedTransportCertificates = SSLCertificateHelper
                             .exportRootCertificates(ts, truststoreAlias);
@@ -320,12 +388,21 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                         throw new ElasticsearchException("No truststore configured for server");
                     }
 
-                    transportServerSslContext = buildSSLServerContext(transportKeystoreKey, transportKeystoreCert,
-                            trustedTransportCertificates, getEnabledSSLCiphers(this.sslTransportServerProvider, false),
+                    final ServerKeyMaterial transportKeyMaterial = keyMaterial(sslTransportServerProvider, ks, keystoreFilePath,
+                            keystorePassword, SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_ADDITIONAL_ALIASES,
+                            transportKeystoreKey, transportKeystoreCert);
+
+                    benchmarkCiphers(sslTransportServerProvider, false,
+                            () -> SslContextBuilder.forServer(transportKeystoreKey, transportKeystoreCert));
+                    preferEcdsa(false, transportKeyMaterial);
+
+                    transportServer = () -> buildSSLServerContext(transportKeystoreKey, transportKeystoreCert,
+                            transportKeyMaterial, trustedTransportCertificates, getEnabledSSLCiphers(this.sslTransportServerProvider, false),
                             this.sslTransportServerProvider, ClientAuth.REQUIRE);
-                    transportClientSslContext = buildSSLClientContext(transportKeystoreKey, transportKeystoreCert,
+                    transportClient = () -> buildSSLClientContext(transportKeystoreKey, transportKeystoreCert,
                             trustedTransportCertificates, getEnabledSSLCiphers(sslTransportClientProvider, false),
                             sslTransportClientProvider);
+                    transportError = "Error while initializing transport SSL layer: ";
 
                 } catch (final Exception e) {
                     logExplanation(e);
@@ -341,17 +418,43 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                 final String trustedCas = resolve(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMTRUSTEDCAS_FILEPATH,
                         true);
 
+                final String pemKeyPassword = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_PASSWORD);
+
                 try {
 
-                    transportServerSslContext = buildSSLServerContext(new File(pemKey), new File(pemCertFilePath),
-                            new File(trustedCas),
-                            settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_PASSWORD),
-                            getEnabledSSLCiphers(this.sslTransportServerProvider, false),
-                            this.sslTransportServerProvider, ClientAuth.REQUIRE);
-                    transportClientSslContext = buildSSLClientContext(new File(pemKey), new File(pemCertFilePath),
-                            new File(trustedCas),
-                            settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_PASSWORD),
-                            getEnabledSSLCiphers(sslTransportClientProvider, false), sslTransportClientProvider);
+                    final PrivateKey transportPemKey = readPemKey(pemKey, pemKeyPassword);
+                    final X509Certificate[] transportPemCert = transportPemKey == null ? null
+                            : ServerKeyMaterial.readCertificates(new File(pemCertFilePath));
+                    final boolean parsed = transportPemCert != null && transportPemCert.length > 0;
+
+                    final ServerKeyMaterial transportKeyMaterial = keyMaterial(sslTransportServerProvider, pemKey, pemCertFilePath,
+                            pemKeyPassword, parsed ? transportPemKey : null, transportPemCert,
+                            SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_ADDITIONAL_FILEPATHS,
+                            SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMCERT_ADDITIONAL_FILEPATHS);
+
+                    benchmarkCiphers(sslTransportServerProvider, false, () -> parsed ? SslContextBuilder.forServer(transportPemKey, transportPemCert)
+                            : SslContextBuilder.forServer(new File(pemCertFilePath), new File(pemKey), pemKeyPassword));
+                    preferEcdsa(false, transportKeyMaterial);
+
+                    if (parsed) {
+                        final X509Certificate[] trustedTransportCertificates = ServerKeyMaterial.readCertificates(new File(trustedCas));
+
+                        transportServer = () -> buildSSLServerContext(transportPemKey, transportPemCert, transportKeyMaterial,
+                                trustedTransportCertificates, getEnabledSSLCiphers(this.sslTransportServerProvider, false),
+                                this.sslTransportServerProvider, ClientAuth.REQUIRE);
+                        transportClient = () -> buildSSLClientContext(transportPemKey, transportPemCert,
+                                trustedTransportCertificates, getEnabledSSLCiphers(sslTransportClientProvider, false),
+                                sslTransportClientProvider);
+                    } else {
+                        transportServer = () -> buildSSLServerContext(new File(pemKey), new File(pemCertFilePath),
+                                transportKeyMaterial, new File(trustedCas), pemKeyPassword,
+                                getEnabledSSLCiphers(this.sslTransportServerProvider, false),
+                                this.sslTransportServerProvider, ClientAuth.REQUIRE);
+                        transportClient = () -> buildSSLClientContext(new File(pemKey), new File(pemCertFilePath),
+                                new File(trustedCas), pemKeyPassword,
+                                getEnabledSSLCiphers(sslTransportClientProvider, false), sslTransportClientProvider);
+                    }
+                    transportError = "Error while initializing transport SSL layer from PEM: ";
 
                 } catch (final Exception e) {
                     logExplanation(e);
@@ -405,11 +508,7 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
 
                 try {
 
-                    final KeyStore ks = KeyStore.getInstance(keystoreType);
-                    try (FileInputStream fin = new FileInputStream(new File(keystoreFilePath))) {
-                        ks.load(fin, (keystorePassword == null || keystorePassword.length() == 0) ? null
-                                : keystorePassword.toCharArray());
-                    }
+                    final KeyStore ks = loadKeyStore(keyStores, keystoreFilePath, keystoreType, keystorePassword);
 
                     final X509Certificate[] httpKeystoreCert = SSLCertificateHelper.exportServerCertChain(ks,
                             keystoreAlias);
@@ -453,16 +552,20 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                         final String truststoreAlias = settings
                                 .get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_ALIAS, null);
 
-                        final KeyStore ts = KeyStore.getInstance(truststoreType);
-                        try (FileInputStream fin = new FileInputStream(new File(truststoreFilePath))) {
-                            ts.load(fin, (truststorePassword == null || truststorePassword.length() == 0) ? null
-                                    : truststorePassword.toCharArray());
-                        }
+                        final KeyStore ts = loadKeyStore(keyStores, truststoreFilePath, truststoreType, truststorePassword);
                         trustedHTTPCertificates = SSLCertificateHelper.exportRootCertificates(ts, truststoreAlias);
                     }
 
-                    httpSslContext = buildSSLServerContext(httpKeystoreKey, httpKeystoreCert, trustedHTTPCertificates,
+                    final ServerKeyMaterial httpKeyMaterial = keyMaterial(sslHTTPProvider, ks, keystoreFilePath, keystorePassword,
+                            SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_ADDITIONAL_ALIASES, httpKeystoreKey, httpKeystoreCert);
+
+                    benchmarkCiphers(sslHTTPProvider, true, () -> SslContextBuilder.forServer(httpKeystoreKey, httpKeystoreCert));
+                    preferEcdsa(true, httpKeyMaterial);
+
+                    final X509Certificate[] _trustedHTTPCertificates = trustedHTTPCertificates;
+                    http = () -> buildSSLServerContext(httpKeystoreKey, httpKeystoreCert, httpKeyMaterial, _trustedHTTPCertificates,
                             getEnabledSSLCiphers(this.sslHTTPProvider, true), sslHTTPProvider, httpClientAuthMode);
+                    httpError = "Error while initializing HTTP SSL layer: ";
 
                 } catch (final Exception e) {
                     logExplanation(e);
@@ -491,11 +594,37 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                 final String pemCertFilePath = resolve(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMCERT_FILEPATH, true);
                 final String pemKey = resolve(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_FILEPATH, true);
 
+                final String pemKeyPassword = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_PASSWORD);
+
                 try {
-                    httpSslContext = buildSSLServerContext(new File(pemKey), new File(pemCertFilePath),
-                            trustedCas == null ? null : new File(trustedCas),
-                            settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_PASSWORD),
-                            getEnabledSSLCiphers(this.sslHTTPProvider, true), sslHTTPProvider, httpClientAuthMode);
+
+                    final PrivateKey httpPemKey = readPemKey(pemKey, pemKeyPassword);
+                    final X509Certificate[] httpPemCert = httpPemKey == null ? null
+                            : ServerKeyMaterial.readCertificates(new File(pemCertFilePath));
+                    final boolean parsed = httpPemCert != null && httpPemCert.length > 0;
+
+                    final ServerKeyMaterial httpKeyMaterial = keyMaterial(sslHTTPProvider, pemKey, pemCertFilePath, pemKeyPassword,
+                            parsed ? httpPemKey : null, httpPemCert,
+                            SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_ADDITIONAL_FILEPATHS,
+                            SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMCERT_ADDITIONAL_FILEPATHS);
+
+                    benchmarkCiphers(sslHTTPProvider, true, () -> parsed ? SslContextBuilder.forServer(httpPemKey, httpPemCert)
+                            : SslContextBuilder.forServer(new File(pemCertFilePath), new File(pemKey), pemKeyPassword));
+                    preferEcdsa(true, httpKeyMaterial);
+
+                    if (parsed) {
+                        final X509Certificate[] trustedHTTPCertificates = trustedCas == null ? null
+                                : ServerKeyMaterial.readCertificates(new File(trustedCas));
+
+                        http = () -> buildSSLServerContext(httpPemKey, httpPemCert, httpKeyMaterial, trustedHTTPCertificates,
+                                getEnabledSSLCiphers(this.sslHTTPProvider, true), sslHTTPProvider, httpClientAuthMode);
+                    } else {
+                        http = () -> buildSSLServerContext(new File(pemKey), new File(pemCertFilePath),
+                                httpKeyMaterial, trustedCas == null ? null : new File(trustedCas), pemKeyPassword,
+                                getEnabledSSLCiphers(this.sslHTTPProvider, true), sslHTTPProvider, httpClientAuthMode);
+                    }
+                    httpError = "Error while initializing http SSL layer from PEM: ";
+
                 } catch (final Exception e) {
                     logExplanation(e);
                     throw new ElasticsearchSecurityException(
@@ -507,45 +636,250 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
                         + SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_FILEPATH
                         + " must be set if http ssl is reqested.");
             }
+        }
+
+        final long keyMaterialNanos = System.nanoTime() - start;
+        final long contextStart = System.nanoTime();
+        final int initThreads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors()));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(initThreads, initThreads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    final Thread thread = new Thread(r, "opendistro_security_ssl_init");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        try {
+            final Future<SslContext> transportServerFuture = transportServer == null ? null
+                    : executor.submit(timed("Transport server", transportServer));
+            final Future<SslContext> transportClientFuture = transportClient == null ? null
+                    : executor.submit(timed("Transport client", transportClient));
+            final Future<SslContext> httpFuture = http == null ? null : executor.submit(timed("HTTP", http));
+
+            if (transportServerFuture != null) {
+                transportServerSslContext = await(transportServerFuture, transportError);
+                transportClientSslContext = await(transportClientFuture, transportError);
+            }
+
+            if (httpFuture != null) {
+                httpSslContext = await(httpFuture, httpError);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (httpSslContext != null
+                && settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_OPENSSL_RELEASE_BUFFERS_ENABLED, false)) {
+            if (OpenSslBuffers.releaseBuffers(httpSslContext)) {
+                log.info("OpenSSL releases the TLS buffers of all HTTP connections whenever no record is pending");
+            } else {
+                log.info("SSL_MODE_RELEASE_BUFFERS is only available with OpenSSL, HTTP provider is {}", sslHTTPProvider);
+            }
+        }
+
+        log.info("SSL contexts initialized in {} ms (key material {} ms with {} distinct key- and truststores loaded, contexts {} ms on {} threads)",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), TimeUnit.NANOSECONDS.toMillis(keyMaterialNanos),
+                keyStores.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - contextStart), initThreads);
+    }
+
+    /**
+     * Runs the cipher benchmark once per provider (if enabled) and puts the faster cipher family first
+     * in the enabled ciphers of the given layer. Must be called before the contexts of the layer are built.
+     */
+    private void benchmarkCiphers(final SslProvider sslProvider, final boolean http, final Supplier<SslContextBuilder> serverContextBuilder) {
+
+        if (!cipherBenchmarkEnabled) {
+            return;
+        }
+
+        CipherBenchmark.Result result = cipherBenchmarks.get(sslProvider);
+
+        if (result == null) {
+            final long start = System.nanoTime();
+            result = AccessController.doPrivileged(
+                    (PrivilegedAction<CipherBenchmark.Result>) () -> CipherBenchmark.run(toContextProvider(sslProvider), serverContextBuilder));
+            cipherBenchmarks.put(sslProvider, result);
+            log.info("Cipher benchmark for {} took {} ms: {}", sslProvider,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), result);
+        }
+
+        if (result.getPreferred() == null) {
+            return;
+        }
+
+        if (http) {
+            httpCipherBenchmark = result;
+            httpServerCipherOrder = true;
+            if (sslProvider == SslProvider.JDK) {
+                enabledHttpCiphersJDKProvider = CipherBenchmark.reorder(enabledHttpCiphersJDKProvider, result.getPreferred());
+            } else {
+                enabledHttpCiphersOpenSSLProvider = Collections.unmodifiableList(
+                        CipherBenchmark.reorder(enabledHttpCiphersOpenSSLProvider, result.getPreferred()));
+            }
+        } else {
+            transportCipherBenchmark = result;
+            transportServerCipherOrder = true;
+            if (sslProvider == SslProvider.JDK) {
+                enabledTransportCiphersJDKProvider = CipherBenchmark.reorder(enabledTransportCiphersJDKProvider, result.getPreferred());
+            } else {
+                enabledTransportCiphersOpenSSLProvider = Collections.unmodifiableList(
+                        CipherBenchmark.reorder(enabledTransportCiphersOpenSSLProvider, result.getPreferred()));
+            }
+        }
+    }
+
+    private static void useServerCipherOrder(final SSLEngine engine) {
+        final SSLParameters sslParams = engine.getSSLParameters();
+        sslParams.setUseCipherSuitesOrder(true);
+        engine.setSSLParameters(sslParams);
+    }
+
+    private Callable<SslContext> timed(final String name, final Callable<SslContext> build) {
+        return () -> {
+            final long start = System.nanoTime();
+            final SslContext sslContext = build.call();
+            log.info("{} SSL context built in {} ms", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return sslContext;
+        };
+    }
 
+    private SslContext await(final Future<SslContext> future, final String errorMessage) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ElasticsearchSecurityException(errorMessage + e.toString(), e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause() == null ? e : e.getCause();
+            logExplanation(cause);
+            throw new ElasticsearchSecurityException(errorMessage + cause.toString(), cause);
         }
     }
 
+    /**
+     * @return the decrypted PKCS#8 key or null if it is in another format or can not be read here, the PEM files
+     *         are then left to Netty (which also reports any errors)
+     */
+    private PrivateKey readPemKey(final String pemKey, final String pwd) {
+        try {
+            return KeyMaterialCache.readPrivateKey(new File(pemKey), pwd);
+        } catch (final Exception e) {
+            log.debug("PEM key {} is left to Netty due to {}", pemKey, e.toString());
+            return null;
+        }
+    }
+
+    private static KeyStore loadKeyStore(final Map<String, KeyStore> keyStores, final String path, final String type,
+            final String password) throws Exception {
+
+        final String key = path + "|" + type + "|" + password;
+        KeyStore keyStore = keyStores.get(key);
+
+        if (keyStore == null) {
+            keyStore = KeyStore.getInstance(type);
+            try (FileInputStream fin = new FileInputStream(new File(path))) {
+                keyStore.load(fin, (password == null || password.length() == 0) ? null : password.toCharArray());
+            }
+            keyStores.put(key, keyStore);
+        }
+
+        return keyStore;
+    }
+
     public SSLEngine createHTTPSSLEngine() throws SSLException {
+        return createHTTPSSLEngine(PooledByteBufAllocator.DEFAULT);
+    }
+
+    public SSLEngine createServerTransportSSLEngine() throws SSLException {
+        return createServerTransportSSLEngine(PooledByteBufAllocator.DEFAULT);
+    }
+
+    public SSLEngine createClientTransportSSLEngine(final String peerHost, final int peerPort) throws SSLException {
+        return createClientTransportSSLEngine(peerHost, peerPort, PooledByteBufAllocator.DEFAULT);
+    }
+
+    @Override
+    public SSLEngine createHTTPSSLEngine(final ByteBufAllocator allocator) throws SSLException {
 
-        final SSLEngine engine = httpSslContext.newEngine(PooledByteBufAllocator.DEFAULT);
-        engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslHTTPProvider, true));
+        final SSLEngine engine = httpSslContext.newEngine(allocator);
+        try {
+            engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslHTTPProvider, true));
+            if (httpServerCipherOrder) {
+                useServerCipherOrder(engine);
+            }
+        } catch (final RuntimeException e) {
+            ReferenceCountUtil.release(engine);
+            throw e;
+        }
         return engine;
 
     }
 
-    public SSLEngine createServerTransportSSLEngine() throws SSLException {
+    @Override
+    public SSLEngine createServerTransportSSLEngine(final ByteBufAllocator allocator) throws SSLException {
 
-        final SSLEngine engine = transportServerSslContext.newEngine(PooledByteBufAllocator.DEFAULT);
-        engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslTransportServerProvider, false));
+        final SSLEngine engine = transportServerSslContext.newEngine(allocator);
+        try {
+            engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslTransportServerProvider, false));
+            if (transportServerCipherOrder) {
+                useServerCipherOrder(engine);
+            }
+        } catch (final RuntimeException e) {
+            ReferenceCountUtil.release(engine);
+            throw e;
+        }
         return engine;
 
     }
 
-    public SSLEngine createClientTransportSSLEngine(final String peerHost, final int peerPort) throws SSLException {
+    @Override
+    public SSLEngine createClientTransportSSLEngine(final String peerHost, final int peerPort, final ByteBufAllocator allocator) throws SSLException {
 
         if (peerHost != null) {
-            final SSLEngine engine = transportClientSslContext.newEngine(PooledByteBufAllocator.DEFAULT, peerHost,
+            final SSLEngine engine = transportClientSslContext.newEngine(allocator, peerHost,
                     peerPort);
 
-            final SSLParameters sslParams = new SSLParameters();
-            sslParams.setEndpointIdentificationAlgorithm("HTTPS");
-            engine.setSSLParameters(sslParams);
-            engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslTransportClientProvider, false));
+            try {
+                final SSLParameters sslParams = new SSLParameters();
+                sslParams.setEndpointIdentificationAlgorithm("HTTPS");
+                engine.setSSLParameters(sslParams);
+                engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslTransportClientProvider, false));
+            } catch (final RuntimeException e) {
+                ReferenceCountUtil.release(engine);
+                throw e;
+            }
             return engine;
         } else {
-            final SSLEngine engine = transportClientSslContext.newEngine(PooledByteBufAllocator.DEFAULT);
-            engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslTransportClientProvider, false));
+            final SSLEngine engine = transportClientSslContext.newEngine(allocator);
+            try {
+                engine.setEnabledProtocols(getEnabledSSLProtocols(this.sslTransportClientProvider, false));
+            } catch (final RuntimeException e) {
+                ReferenceCountUtil.release(engine);
+                throw e;
+            }
             return engine;
         }
 
     }
 
+    /**
+     * Releases the reference counted OpenSSL contexts, open connections keep using them until they are closed
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ReferenceCountUtil.release(httpSslContext);
+        ReferenceCountUtil.release(transportServerSslContext);
+        ReferenceCountUtil.release(transportClientSslContext);
+    }
+
+    @Override
+    public CipherBenchmark.Result getCipherBenchmark(final boolean http) {
+        return http ? httpCipherBenchmark : transportCipherBenchmark;
+    }
+
     @Override
     public String getHTTPProviderName() {
         return sslHTTPProvider == null ? null : sslHTTPProvider.toString();
@@ -618,38 +952,27 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
         final List<String> secureHttpSSLProtocols = Arrays.asList(SSLConfigConstants.getSecureSSLProtocols(settings, true));
         final List<String> secureTransportSSLProtocols = Arrays.asList(SSLConfigConstants.getSecureSSLProtocols(settings, false));
 
-        if (OpenSsl.isAvailable()) {
-            final Set<String> openSSLSecureHttpCiphers = new HashSet<>();
-            for (final String secure : secureHttpSSLCiphers) {
-                if (OpenSsl.isCipherSuiteAvailable(secure)) {
-                    openSSLSecureHttpCiphers.add(secure);
-                }
-            }
-            
-            
-            log.debug("OPENSSL "+OpenSsl.versionString()+" supports the following ciphers (java-style) {}", OpenSsl.availableJavaCipherSuites());
-            log.debug("OPENSSL "+OpenSsl.versionString()+" supports the following ciphers (openssl-style) {}", OpenSsl.availableOpenSslCipherSuites());
+        final CapabilityProbeCache probeCache = createProbeCache(secureHttpSSLCiphers, secureTransportSSLCiphers,
+                secureHttpSSLProtocols, secureTransportSSLProtocols);
+        Map<String, List<String>> probes = probeCache == null ? null
+                : AccessController.doPrivileged((PrivilegedAction<Map<String, List<String>>>) probeCache::load);
 
-            enabledHttpCiphersOpenSSLProvider = Collections
-                    .unmodifiableList(new ArrayList<String>(openSSLSecureHttpCiphers));
+        if (probes != null && probes.keySet().containsAll(PROBE_NAMES)) {
+            log.info("Reusing cached SSL cipher and protocol probes");
         } else {
-            enabledHttpCiphersOpenSSLProvider = Collections.emptyList();
+            probes = probeCapabilities(secureHttpSSLCiphers, secureTransportSSLCiphers);
+            if (probeCache != null && probes.keySet().containsAll(PROBE_NAMES)) {
+                final Map<String, List<String>> _probes = probes;
+                AccessController.doPrivileged((PrivilegedAction<Void>) () -> {
+                    probeCache.store(_probes);
+                    return null;
+                });
+            }
         }
 
-        if (OpenSsl.isAvailable()) {
-            final Set<String> openSSLSecureTransportCiphers = new HashSet<>();
-            for (final String secure : secureTransportSSLCiphers) {
-                if (OpenSsl.isCipherSuiteAvailable(secure)) {
-                    openSSLSecureTransportCiphers.add(secure);
-                }
-            }
+        enabledHttpCiphersOpenSSLProvider = Collections.unmodifiableList(probes.get(PROBE_OPENSSL_HTTP_CIPHERS));
+        enabledTransportCiphersOpenSSLProvider = Collections.unmodifiableList(probes.get(PROBE_OPENSSL_TRANSPORT_CIPHERS));
 
-            enabledTransportCiphersOpenSSLProvider = Collections
-                    .unmodifiableList(new ArrayList<String>(openSSLSecureTransportCiphers));
-        } else {
-            enabledTransportCiphersOpenSSLProvider = Collections.emptyList();
-        }
-        
         if(OpenSsl.isAvailable() && OpenSsl.version() > 0x10101009L) {
             enabledHttpProtocolsOpenSSLProvider = new ArrayList(Arrays.asList("TLSv1.3","TLSv1.2","TLSv1.1"));
             enabledHttpProtocolsOpenSSLProvider.retainAll(secureHttpSSLProtocols);
@@ -668,24 +991,84 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
             enabledTransportProtocolsOpenSSLProvider = Collections.emptyList();
         }
 
+        final List<String> jdkSupportedCiphers = probes.get(PROBE_JDK_CIPHERS);
+        final List<String> jdkSupportedProtocols = probes.get(PROBE_JDK_PROTOCOLS);
+
+        if (jdkSupportedProtocols != null && jdkSupportedProtocols.contains("TLSv1.3")) {
+            log.info("JVM supports TLSv1.3");
+        }
+
+        if(jdkSupportedCiphers == null || jdkSupportedCiphers.isEmpty() || jdkSupportedProtocols == null || jdkSupportedProtocols.isEmpty()) {
+            throw new ElasticsearchException("Unable to determine supported ciphers or protocols");
+        }
+        
+        enabledHttpCiphersJDKProvider = new ArrayList<String>(jdkSupportedCiphers);
+        enabledHttpCiphersJDKProvider.retainAll(secureHttpSSLCiphers);
+        
+        enabledTransportCiphersJDKProvider = new ArrayList<String>(jdkSupportedCiphers);
+        enabledTransportCiphersJDKProvider.retainAll(secureTransportSSLCiphers);
+        
+        enabledHttpProtocolsJDKProvider = new ArrayList<String>(jdkSupportedProtocols);
+        enabledHttpProtocolsJDKProvider.retainAll(secureHttpSSLProtocols);
+        
+        enabledTransportProtocolsJDKProvider = new ArrayList<String>(jdkSupportedProtocols);
+        enabledTransportProtocolsJDKProvider.retainAll(secureTransportSSLProtocols);
+    }
+
+    /**
+     * Asks the OpenSSL and JDK providers which of the configured ciphers and protocols they support.
+     * A JDK probe which failed is missing from the result.
+     */
+    private Map<String, List<String>> probeCapabilities(final List<String> secureHttpSSLCiphers,
+            final List<String> secureTransportSSLCiphers) {
+
+        final Map<String, List<String>> probes = new HashMap<>();
+
+        if (OpenSsl.isAvailable()) {
+            final Set<String> openSSLSecureHttpCiphers = new LinkedHashSet<>();
+            for (final String secure : secureHttpSSLCiphers) {
+                if (OpenSsl.isCipherSuiteAvailable(secure)) {
+                    openSSLSecureHttpCiphers.add(secure);
+                }
+            }
+
+            final Set<String> openSSLSecureTransportCiphers = new LinkedHashSet<>();
+            for (final String secure : secureTransportSSLCiphers) {
+                if (OpenSsl.isCipherSuiteAvailable(secure)) {
+                    openSSLSecureTransportCiphers.add(secure);
+                }
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("OPENSSL "+OpenSsl.versionString()+" supports the following ciphers (java-style) {}", OpenSsl.availableJavaCipherSuites());
+                log.debug("OPENSSL "+OpenSsl.versionString()+" supports the following ciphers (openssl-style) {}", OpenSsl.availableOpenSslCipherSuites());
+            }
+
+            probes.put(PROBE_OPENSSL_HTTP_CIPHERS, new ArrayList<String>(openSSLSecureHttpCiphers));
+            probes.put(PROBE_OPENSSL_TRANSPORT_CIPHERS, new ArrayList<String>(openSSLSecureTransportCiphers));
+        } else {
+            probes.put(PROBE_OPENSSL_HTTP_CIPHERS, Collections.emptyList());
+            probes.put(PROBE_OPENSSL_TRANSPORT_CIPHERS, Collections.emptyList());
+        }
+
         SSLEngine engine = null;
-        List<String> jdkSupportedCiphers = null;
-        List<String> jdkSupportedProtocols = null;
         try {
             final SSLContext serverContext = SSLContext.getInstance("TLS");
-            serverContext.init(null, null, null);
+            //empty key and trust managers, the defaults would load and parse the JDK cacerts just to list ciphers
+            serverContext.init(new KeyManager[0], new TrustManager[0], null);
             engine = serverContext.createSSLEngine();
-            jdkSupportedCiphers = Arrays.asList(engine.getEnabledCipherSuites());
-            jdkSupportedProtocols = Arrays.asList(engine.getEnabledProtocols());
+            final List<String> jdkSupportedCiphers = Arrays.asList(engine.getEnabledCipherSuites());
+            final List<String> jdkSupportedProtocols = Arrays.asList(engine.getEnabledProtocols());
             log.debug("JVM supports the following {} protocols {}", jdkSupportedProtocols.size(),
                     jdkSupportedProtocols);
             log.debug("JVM supports the following {} ciphers {}", jdkSupportedCiphers.size(),
                     jdkSupportedCiphers);
-            
-            if(jdkSupportedProtocols.contains("TLSv1.3")) {
-                log.info("JVM supports TLSv1.3");
+
+            if (!jdkSupportedCiphers.isEmpty() && !jdkSupportedProtocols.isEmpty()) {
+                probes.put(PROBE_JDK_CIPHERS, jdkSupportedCiphers);
+                probes.put(PROBE_JDK_PROTOCOLS, jdkSupportedProtocols);
             }
-            
+
         } catch (final Throwable e) {
             log.error("Unable to determine supported ciphers due to " + e, e);
         } finally {
@@ -699,31 +1082,58 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
             }
         }
 
-        if(jdkSupportedCiphers == null || jdkSupportedCiphers.isEmpty() || jdkSupportedProtocols == null || jdkSupportedProtocols.isEmpty()) {
-            throw new ElasticsearchException("Unable to determine supported ciphers or protocols");
+        return probes;
+    }
+
+    /**
+     * @return the cache for the capability probes or null if it is disabled or there is no data directory
+     */
+    private CapabilityProbeCache createProbeCache(final List<String> secureHttpSSLCiphers, final List<String> secureTransportSSLCiphers,
+            final List<String> secureHttpSSLProtocols, final List<String> secureTransportSSLProtocols) {
+
+        if (!settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_PROBE_CACHE_ENABLED, false)
+                || env == null || env.dataFiles().length == 0
+                || !"node".equals(settings.get(OpenDistroSecuritySSLPlugin.CLIENT_TYPE))) {
+            return null;
         }
-        
-        enabledHttpCiphersJDKProvider = new ArrayList<String>(jdkSupportedCiphers);
-        enabledHttpCiphersJDKProvider.retainAll(secureHttpSSLCiphers);
-        
-        enabledTransportCiphersJDKProvider = new ArrayList<String>(jdkSupportedCiphers);
-        enabledTransportCiphersJDKProvider.retainAll(secureTransportSSLCiphers);
-        
-        enabledHttpProtocolsJDKProvider = new ArrayList<String>(jdkSupportedProtocols);
-        enabledHttpProtocolsJDKProvider.retainAll(secureHttpSSLProtocols);
-        
-        enabledTransportProtocolsJDKProvider = new ArrayList<String>(jdkSupportedProtocols);
-        enabledTransportProtocolsJDKProvider.retainAll(secureTransportSSLProtocols);
+
+        final List<String> keyParts = new ArrayList<>();
+        keyParts.add(System.getProperty("java.vendor"));
+        keyParts.add(System.getProperty("java.vm.version"));
+        keyParts.add(System.getProperty("java.runtime.version"));
+        keyParts.add(System.getProperty("jdk.tls.client.protocols"));
+        keyParts.add(System.getProperty("jdk.tls.server.protocols"));
+        keyParts.add(AccessController.doPrivileged((PrivilegedAction<String>) () -> Security.getProperty("jdk.tls.disabledAlgorithms")));
+        //the JCE policy limits the AES key length and therefore the ciphers which the JDK provider supports
+        keyParts.add(AccessController.doPrivileged((PrivilegedAction<String>) () -> Security.getProperty("crypto.policy")));
+        try {
+            keyParts.add(String.valueOf(Cipher.getMaxAllowedKeyLength("AES")));
+        } catch (final NoSuchAlgorithmException e) {
+            keyParts.add("no AES");
+        }
+        for (final Provider provider : Security.getProviders()) {
+            keyParts.add(provider.getName() + " " + provider.getVersion());
+        }
+        keyParts.add(OpenSsl.isAvailable() ? OpenSsl.version() + " " + OpenSsl.versionString() : "no openssl");
+        keyParts.add(String.join(",", secureHttpSSLCiphers));
+        keyParts.add(String.join(",", secureTransportSSLCiphers));
+        keyParts.add(String.join(",", secureHttpSSLProtocols));
+        keyParts.add(String.join(",", secureTransportSSLProtocols));
+
+        return new CapabilityProbeCache(env.dataFiles()[0].resolve(CapabilityProbeCache.FILE_NAME), keyParts);
     }
 
-    private SslContext buildSSLServerContext(final PrivateKey _key, final X509Certificate[] _cert,
+    private SslContext buildSSLServerContext(final PrivateKey _key, final X509Certificate[] _cert, final ServerKeyMaterial keyMaterial,
             final X509Certificate[] _trustedCerts, final Iterable<String> ciphers, final SslProvider sslProvider,
             final ClientAuth authMode) throws SSLException {
 
-        final SslContextBuilder _sslContextBuilder = SslContextBuilder.forServer(_key, _cert).ciphers(ciphers)
+        final KeyManagerFactory kmf = keyMaterial != null ? keyManagerFactory(sslProvider, keyMaterial)
+                : cachingKeyManagerFactory(sslProvider, _key, _cert);
+        final SslContextBuilder _sslContextBuilder = (kmf == null ? SslContextBuilder.forServer(_key, _cert) : SslContextBuilder.forServer(kmf))
+                .ciphers(ciphers)
                 .applicationProtocolConfig(ApplicationProtocolConfig.DISABLED)
                 .clientAuth(Objects.requireNonNull(authMode)) // https://github.com/netty/netty/issues/4722
-                .sessionCacheSize(0).sessionTimeout(0).sslProvider(sslProvider);
+                .sessionCacheSize(0).sessionTimeout(0).sslProvider(toContextProvider(sslProvider));
 
         if (_trustedCerts != null && _trustedCerts.length > 0) {
             _sslContextBuilder.trustManager(_trustedCerts);
@@ -732,14 +1142,17 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
         return buildSSLContext0(_sslContextBuilder);
     }
 
-    private SslContext buildSSLServerContext(final File _key, final File _cert, final File _trustedCerts,
-            final String pwd, final Iterable<String> ciphers, final SslProvider sslProvider, final ClientAuth authMode)
-            throws SSLException {
+    private SslContext buildSSLServerContext(final File _key, final File _cert, final ServerKeyMaterial keyMaterial,
+            final File _trustedCerts, final String pwd, final Iterable<String> ciphers, final SslProvider sslProvider,
+            final ClientAuth authMode) throws SSLException {
 
-        final SslContextBuilder _sslContextBuilder = SslContextBuilder.forServer(_cert, _key, pwd).ciphers(ciphers)
+        final KeyManagerFactory kmf = keyMaterial != null ? keyManagerFactory(sslProvider, keyMaterial)
+                : cachingKeyManagerFactory(sslProvider, _key, _cert, pwd);
+        final SslContextBuilder _sslContextBuilder = (kmf == null ? SslContextBuilder.forServer(_cert, _key, pwd) : SslContextBuilder.forServer(kmf))
+                .ciphers(ciphers)
                 .applicationProtocolConfig(ApplicationProtocolConfig.DISABLED)
                 .clientAuth(Objects.requireNonNull(authMode)) // https://github.com/netty/netty/issues/4722
-                .sessionCacheSize(0).sessionTimeout(0).sslProvider(sslProvider);
+                .sessionCacheSize(0).sessionTimeout(0).sslProvider(toContextProvider(sslProvider));
 
         if (_trustedCerts != null) {
             _sslContextBuilder.trustManager(_trustedCerts);
@@ -754,7 +1167,14 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
 
         final SslContextBuilder _sslClientContextBuilder = SslContextBuilder.forClient().ciphers(ciphers)
                 .applicationProtocolConfig(ApplicationProtocolConfig.DISABLED).sessionCacheSize(0).sessionTimeout(0)
-                .sslProvider(sslProvider).trustManager(_trustedCerts).keyManager(_key, _cert);
+                .sslProvider(toContextProvider(sslProvider)).trustManager(_trustedCerts);
+
+        final KeyManagerFactory kmf = cachingKeyManagerFactory(sslProvider, _key, _cert);
+        if (kmf == null) {
+            _sslClientContextBuilder.keyManager(_key, _cert);
+        } else {
+            _sslClientContextBuilder.keyManager(kmf);
+        }
 
         return buildSSLContext0(_sslClientContextBuilder);
 
@@ -765,12 +1185,157 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
 
         final SslContextBuilder _sslClientContextBuilder = SslContextBuilder.forClient().ciphers(ciphers)
                 .applicationProtocolConfig(ApplicationProtocolConfig.DISABLED).sessionCacheSize(0).sessionTimeout(0)
-                .sslProvider(sslProvider).trustManager(_trustedCerts).keyManager(_cert, _key, pwd);
+                .sslProvider(toContextProvider(sslProvider)).trustManager(_trustedCerts);
+
+        final KeyManagerFactory kmf = cachingKeyManagerFactory(sslProvider, _key, _cert, pwd);
+        if (kmf == null) {
+            _sslClientContextBuilder.keyManager(_cert, _key, pwd);
+        } else {
+            _sslClientContextBuilder.keyManager(kmf);
+        }
 
         return buildSSLContext0(_sslClientContextBuilder);
 
     }
 
+    /**
+     * @return a key manager factory which caches the native key material or null if not enabled or not supported
+     */
+    private KeyManagerFactory cachingKeyManagerFactory(final SslProvider sslProvider, final PrivateKey key, final X509Certificate[] chain)
+            throws SSLException {
+
+        if (!cacheKeyMaterial || sslProvider != SslProvider.OPENSSL || !KeyMaterialCache.isSupported()) {
+            return null;
+        }
+
+        try {
+            return KeyMaterialCache.newKeyManagerFactory(key, chain);
+        } catch (final Exception e) {
+            throw new SSLException("Unable to prepare key material", e);
+        }
+    }
+
+    private KeyManagerFactory cachingKeyManagerFactory(final SslProvider sslProvider, final File key, final File chain, final String pwd) {
+
+        if (!cacheKeyMaterial || sslProvider != SslProvider.OPENSSL || !KeyMaterialCache.isSupported()) {
+            return null;
+        }
+
+        return KeyMaterialCache.newKeyManagerFactory(key, chain, pwd);
+    }
+
+    private KeyManagerFactory keyManagerFactory(final SslProvider sslProvider, final ServerKeyMaterial keyMaterial) throws SSLException {
+        try {
+            return keyMaterial.newKeyManagerFactory(cacheKeyMaterial && sslProvider == SslProvider.OPENSSL && KeyMaterialCache.isSupported());
+        } catch (final Exception e) {
+            throw new SSLException("Unable to prepare key material", e);
+        }
+    }
+
+    /**
+     * @return the first key and the keys with the additional aliases of the keystore or null if there are no additional aliases
+     */
+    private ServerKeyMaterial keyMaterial(final SslProvider sslProvider, final KeyStore ks, final String keystoreFilePath,
+            final String keystorePassword, final String additionalAliasesSetting, final PrivateKey key, final X509Certificate[] chain)
+            throws Exception {
+
+        final List<String> additionalAliases = settings.getAsList(additionalAliasesSetting, Collections.emptyList());
+
+        if (additionalAliases.isEmpty() || !supportsMultipleKeys(sslProvider)) {
+            return null;
+        }
+
+        final ServerKeyMaterial keyMaterial = new ServerKeyMaterial().add(key, chain);
+
+        for (final String alias : additionalAliases) {
+            final X509Certificate[] additionalChain = SSLCertificateHelper.exportServerCertChain(ks, alias);
+            final PrivateKey additionalKey = SSLCertificateHelper.exportDecryptedKey(ks, alias,
+                    (keystorePassword == null || keystorePassword.length() == 0) ? null : keystorePassword.toCharArray());
+
+            if (additionalKey == null) {
+                throw new ElasticsearchException("No key found in " + keystoreFilePath + " with alias " + alias);
+            }
+
+            if (additionalChain == null || additionalChain.length == 0) {
+                throw new ElasticsearchException("No certificates found in " + keystoreFilePath + " with alias " + alias);
+            }
+
+            keyMaterial.add(additionalKey, additionalChain);
+        }
+
+        return keyMaterial;
+    }
+
+    /**
+     * @param key the already parsed first key (with its chain) or null to read it from the PEM files
+     * @return the first PEM key and the additional PEM keys or null if there are no additional keys
+     */
+    private ServerKeyMaterial keyMaterial(final SslProvider sslProvider, final String pemKey, final String pemCert, final String pwd,
+            final PrivateKey key, final X509Certificate[] chain, final String additionalKeysSetting, final String additionalCertsSetting)
+            throws Exception {
+
+        final List<String> additionalKeys = resolveAll(additionalKeysSetting);
+        final List<String> additionalCerts = resolveAll(additionalCertsSetting);
+
+        if (additionalKeys.size() != additionalCerts.size()) {
+            throw new ElasticsearchException(additionalKeysSetting + " and " + additionalCertsSetting + " must have the same number of entries");
+        }
+
+        if (additionalKeys.isEmpty() || !supportsMultipleKeys(sslProvider)) {
+            return null;
+        }
+
+        final ServerKeyMaterial keyMaterial = key != null ? new ServerKeyMaterial().add(key, chain)
+                : new ServerKeyMaterial().add(new File(pemKey), new File(pemCert), pwd);
+
+        for (int i = 0; i < additionalKeys.size(); i++) {
+            keyMaterial.add(new File(additionalKeys.get(i)), new File(additionalCerts.get(i)), pwd);
+        }
+
+        return keyMaterial;
+    }
+
+    private boolean supportsMultipleKeys(final SslProvider sslProvider) {
+        if (sslProvider == SslProvider.OPENSSL && !OpenSsl.supportsKeyManagerFactory()) {
+            log.warn("OpenSSL {} does not support key manager factories, only the first key is used", OpenSsl.versionString());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * If ECDSA and other keys are served side by side, ECDSA cipher suites are moved to the front and the server
+     * cipher order is used, so that every client which supports ECDSA gets the cheaper ECDSA handshake.
+     */
+    private void preferEcdsa(final boolean http, final ServerKeyMaterial keyMaterial) {
+
+        if (keyMaterial == null || keyMaterial.size() < 2 || !keyMaterial.hasKeyAlgorithm("EC")) {
+            return;
+        }
+
+        if (http) {
+            enabledHttpCiphersJDKProvider = ServerKeyMaterial.preferEcdsa(enabledHttpCiphersJDKProvider);
+            enabledHttpCiphersOpenSSLProvider = Collections.unmodifiableList(ServerKeyMaterial.preferEcdsa(enabledHttpCiphersOpenSSLProvider));
+            httpServerCipherOrder = true;
+        } else {
+            enabledTransportCiphersJDKProvider = ServerKeyMaterial.preferEcdsa(enabledTransportCiphersJDKProvider);
+            enabledTransportCiphersOpenSSLProvider = Collections.unmodifiableList(ServerKeyMaterial.preferEcdsa(enabledTransportCiphersOpenSSLProvider));
+            transportServerCipherOrder = true;
+        }
+
+        log.info("{} keys configured for {}, ECDSA cipher suites are preferred", keyMaterial.size(), http ? "HTTP" : "transport");
+    }
+
+    /**
+     * OpenSSL contexts and engines are built reference counted, so that their native memory is freed
+     * as soon as they are released instead of by the finalizer. Engines retain their context and are
+     * released by the {@link io.netty.handler.ssl.SslHandler} when their channel closes, the contexts
+     * are released in {@link #close()} and freed after the last engine is gone.
+     */
+    private static SslProvider toContextProvider(final SslProvider sslProvider) {
+        return sslProvider == SslProvider.OPENSSL ? SslProvider.OPENSSL_REFCNT : sslProvider;
+    }
+
     private SslContext buildSSLContext0(final SslContextBuilder sslContextBuilder) throws SSLException {
 
         final SecurityManager sm = System.getSecurityManager();
@@ -794,7 +1359,7 @@ public class DefaultOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyS
         return sslContext;
     }
 
-    private void logExplanation(Exception e) {
+    private void logExplanation(Throwable e) {
         if (ExceptionUtils.findMsg(e, "not contain valid private key") != null) {
             log.error("Your keystore or PEM does not contain a key. "
                     + "If you specified a key password, try removing it. "
@@ -30,6 +30,8 @@
 
 package com.amazon.opendistroforelasticsearch.security.ssl;
 
+import io.netty.handler.ssl.ClientAuth;
+
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -47,12 +49,21 @@ import org.elasticsearch.common.settings.Settings;
 
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
 
+/**
+ * Key store backed by a {@link SSLContext} which was registered by an embedder. Enabled protocols, cipher suites
+ * and the other engine parameters are computed once, so that creating an engine only copies them.
+ */
 public class ExternalOpenDistroSecurityKeyStore implements OpenDistroSecurityKeyStore {
 
     private static final String EXTERNAL = "EXTERNAL";
     private static final Map<String, SSLContext> contextMap = new ConcurrentHashMap<String, SSLContext>();
     private final SSLContext externalSslContext;
     private final Settings settings;
+    //never modified after construction, SSLEngine.setSSLParameters() copies the values
+    private final SSLParameters clientParameters;
+    private final SSLParameters clientParametersWithHostnameVerification;
+    private final SSLParameters serverTransportParameters;
+    private final SSLParameters httpParameters;
 
     public ExternalOpenDistroSecurityKeyStore(final Settings settings) {
         this.settings = Objects.requireNonNull(settings);
@@ -68,46 +79,70 @@ public class ExternalOpenDistroSecurityKeyStore implements OpenDistroSecurityKey
         if(externalSslContext == null) {
             throw new ElasticsearchException("no external ssl context for id "+externalContextId);
         }
+        
+        final SSLParameters defaults = externalSslContext.getDefaultSSLParameters();
+        final String[] transportProtocols = evalSecure(defaults.getProtocols(), SSLConfigConstants.getSecureSSLProtocols(settings, false));
+        final String[] transportCiphers = evalSecure(defaults.getCipherSuites(), SSLConfigConstants.getSecureSSLCiphers(settings, false).toArray(new String[0]));
+        
+        clientParameters = newParameters(transportProtocols, transportCiphers);
+        clientParametersWithHostnameVerification = newParameters(transportProtocols, transportCiphers);
+        clientParametersWithHostnameVerification.setEndpointIdentificationAlgorithm("HTTPS");
+        
+        serverTransportParameters = newParameters(transportProtocols, transportCiphers);
+        serverTransportParameters.setNeedClientAuth(true);
+        
+        httpParameters = newParameters(evalSecure(defaults.getProtocols(), SSLConfigConstants.getSecureSSLProtocols(settings, true)),
+                evalSecure(defaults.getCipherSuites(), SSLConfigConstants.getSecureSSLCiphers(settings, true).toArray(new String[0])));
+        
+        final ClientAuth httpClientAuthMode = ClientAuth.valueOf(settings
+                .get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CLIENTAUTH_MODE, ClientAuth.OPTIONAL.toString()));
+        
+        if(httpClientAuthMode == ClientAuth.REQUIRE) {
+            httpParameters.setNeedClientAuth(true);
+        } else if(httpClientAuthMode == ClientAuth.OPTIONAL) {
+            httpParameters.setWantClientAuth(true);
+        }
     }
 
     @Override
     public SSLEngine createHTTPSSLEngine() throws SSLException {
-        throw new SSLException("not implemented");
+        final SSLEngine engine = externalSslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setSSLParameters(httpParameters);
+        return engine;
     }
 
     @Override
     public SSLEngine createServerTransportSSLEngine() throws SSLException {
-        throw new SSLException("not implemented");
+        final SSLEngine engine = externalSslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setSSLParameters(serverTransportParameters);
+        return engine;
     }
 
     @Override
     public SSLEngine createClientTransportSSLEngine(final String peerHost, final int peerPort) throws SSLException {
         if (peerHost != null) {
-            final SSLEngine engine = externalSslContext.createSSLEngine(peerHost, peerPort);            
-            final SSLParameters sslParams = new SSLParameters();
-            sslParams.setEndpointIdentificationAlgorithm("HTTPS");
-            engine.setSSLParameters(sslParams);
-            engine.setEnabledProtocols(evalSecure(engine.getEnabledProtocols(), SSLConfigConstants.getSecureSSLProtocols(settings, false)));
-            engine.setEnabledCipherSuites(evalSecure(engine.getEnabledCipherSuites(), SSLConfigConstants.getSecureSSLCiphers(settings, false).toArray(new String[0])));
+            final SSLEngine engine = externalSslContext.createSSLEngine(peerHost, peerPort);
             engine.setUseClientMode(true);
+            engine.setSSLParameters(clientParametersWithHostnameVerification);
             return engine;
         } else {
             final SSLEngine engine = externalSslContext.createSSLEngine();
-            engine.setEnabledProtocols(evalSecure(engine.getEnabledProtocols(), SSLConfigConstants.getSecureSSLProtocols(settings, false)));
-            engine.setEnabledCipherSuites(evalSecure(engine.getEnabledCipherSuites(), SSLConfigConstants.getSecureSSLCiphers(settings, false).toArray(new String[0])));
             engine.setUseClientMode(true);
+            engine.setSSLParameters(clientParameters);
             return engine;
         }
     }
 
     @Override
     public String getHTTPProviderName() {
-        return null;
+        return EXTERNAL;
     }
 
     @Override
     public String getTransportServerProviderName() {
-        return null;
+        return EXTERNAL;
     }
 
     @Override
@@ -143,7 +178,14 @@ public class ExternalOpenDistroSecurityKeyStore implements OpenDistroSecurityKey
         contextMap.clear();
     }
     
-    private String[] evalSecure(String[] engineEnabled, String[] secure) {
+    private static SSLParameters newParameters(final String[] protocols, final String[] ciphers) {
+        final SSLParameters sslParams = new SSLParameters();
+        sslParams.setProtocols(protocols);
+        sslParams.setCipherSuites(ciphers);
+        return sslParams;
+    }
+    
+    private static String[] evalSecure(String[] engineEnabled, String[] secure) {
         List<String> tmp = new ArrayList<>(Arrays.asList(engineEnabled));
         tmp.retainAll(Arrays.asList(secure));
         return tmp.toArray(new String[0]);
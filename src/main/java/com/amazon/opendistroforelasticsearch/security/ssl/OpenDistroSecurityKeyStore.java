@@ -30,9 +30,13 @@
 
 package com.amazon.opendistroforelasticsearch.security.ssl;
 
+import io.netty.buffer.ByteBufAllocator;
+
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CipherBenchmark;
+
 public interface OpenDistroSecurityKeyStore {
 
     public SSLEngine createHTTPSSLEngine() throws SSLException;
@@ -41,6 +45,29 @@ public interface OpenDistroSecurityKeyStore {
 
     public SSLEngine createClientTransportSSLEngine(String peerHost, int peerPort) throws SSLException;
 
+    /**
+     * Like {@link #createHTTPSSLEngine()} but engine buffers are allocated from the given allocator
+     * (only used by OpenSSL engines). Implementations which do not support this ignore the allocator.
+     */
+    default SSLEngine createHTTPSSLEngine(ByteBufAllocator allocator) throws SSLException {
+        return createHTTPSSLEngine();
+    }
+
+    default SSLEngine createServerTransportSSLEngine(ByteBufAllocator allocator) throws SSLException {
+        return createServerTransportSSLEngine();
+    }
+
+    default SSLEngine createClientTransportSSLEngine(String peerHost, int peerPort, ByteBufAllocator allocator) throws SSLException {
+        return createClientTransportSSLEngine(peerHost, peerPort);
+    }
+
+    /**
+     * @return the startup cipher benchmark which decided the cipher order of http or transport, null if there was none
+     */
+    default CipherBenchmark.Result getCipherBenchmark(boolean http) {
+        return null;
+    }
+
     public String getHTTPProviderName();
     public String getTransportServerProviderName();
     public String getTransportClientProviderName();
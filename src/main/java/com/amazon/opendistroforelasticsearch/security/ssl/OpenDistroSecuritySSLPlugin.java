@@ -30,9 +30,12 @@
 
 package com.amazon.opendistroforelasticsearch.security.ssl;
 
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.OpenSsl;
 import io.netty.util.internal.PlatformDependent;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
@@ -64,7 +67,11 @@ import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.env.Environment;
@@ -78,6 +85,8 @@ import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestHandler;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.Transport;
 import org.elasticsearch.transport.TransportInterceptor;
@@ -89,7 +98,17 @@ import com.amazon.opendistroforelasticsearch.security.ssl.rest.OpenDistroSecurit
 import com.amazon.opendistroforelasticsearch.security.ssl.transport.OpenDistroSecuritySSLNettyTransport;
 import com.amazon.opendistroforelasticsearch.security.ssl.transport.OpenDistroSecuritySSLTransportInterceptor;
 import com.amazon.opendistroforelasticsearch.security.ssl.transport.PrincipalExtractor;
+import com.amazon.opendistroforelasticsearch.security.ssl.transport.SSLTransportWarmer;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CrlPrefetcher;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.HandshakeFailureTracker;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.PlaintextRejectionHandler;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.RevocationStore;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLRequestHelper;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslEngineMemoryAccounting;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslFailureReporter;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslHandlerFactory;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
 
 //For ES5 this class has only effect when SSL only plugin is installed
 public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin, NetworkPlugin {
@@ -103,6 +122,10 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
     protected final OpenDistroSecurityKeyStore odsks;
     protected PrincipalExtractor principalExtractor;
     protected final Path configPath;
+    private CrlPrefetcher crlPrefetcher;
+    private SSLTransportWarmer transportWarmer;
+    private volatile Transport sslTransport;
+    protected final SslStats sslStats = new SslStats();
     private final static SslExceptionHandler NOOP_SSL_EXCEPTION_HANDLER = new SslExceptionHandler() {};
     
     public OpenDistroSecuritySSLPlugin(final Settings settings, final Path configPath) {
@@ -209,6 +232,20 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
     
     
 
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+        
+        final List<ExecutorBuilder<?>> executorBuilders = new ArrayList<>(1);
+        
+        if (!client && httpSSLEnabled && ValidatingDispatcher.isAsyncValidationEnabled(settings)) {
+            //revocation checks are mostly waiting for network I/O
+            final int size = Math.min(2 * EsExecutors.numberOfProcessors(settings), 16);
+            executorBuilders.add(new FixedExecutorBuilder(settings, ValidatingDispatcher.VALIDATION_THREAD_POOL_NAME, size, 1000));
+        }
+        
+        return executorBuilders;
+    }
+
     @Override
     public Map<String, Supplier<HttpServerTransport>> getHttpTransports(Settings settings, ThreadPool threadPool, BigArrays bigArrays,
             CircuitBreakerService circuitBreakerService, NamedWriteableRegistry namedWriteableRegistry,
@@ -217,8 +254,8 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
         final Map<String, Supplier<HttpServerTransport>> httpTransports = new HashMap<String, Supplier<HttpServerTransport>>(1);
         if (!client && httpSSLEnabled) {
             
-            final ValidatingDispatcher validatingDispatcher = new ValidatingDispatcher(threadPool.getThreadContext(), dispatcher, settings, configPath, NOOP_SSL_EXCEPTION_HANDLER);
-            final OpenDistroSecuritySSLNettyHttpServerTransport sgsnht = new OpenDistroSecuritySSLNettyHttpServerTransport(settings, networkService, bigArrays, threadPool, odsks, xContentRegistry, validatingDispatcher, NOOP_SSL_EXCEPTION_HANDLER);
+            final ValidatingDispatcher validatingDispatcher = new ValidatingDispatcher(threadPool.getThreadContext(), dispatcher, settings, configPath, NOOP_SSL_EXCEPTION_HANDLER, threadPool);
+            final OpenDistroSecuritySSLNettyHttpServerTransport sgsnht = new OpenDistroSecuritySSLNettyHttpServerTransport(settings, networkService, bigArrays, threadPool, odsks, xContentRegistry, validatingDispatcher, NOOP_SSL_EXCEPTION_HANDLER, circuitBreakerService, sslStats);
             
             httpTransports.put("com.amazon.opendistroforelasticsearch.security.ssl.http.netty.OpenDistroSecuritySSLNettyHttpServerTransport", () -> sgsnht);
             
@@ -234,7 +271,7 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
         final List<RestHandler> handlers = new ArrayList<RestHandler>(1);
         
         if (!client) {
-            handlers.add(new OpenDistroSecuritySSLInfoAction(settings, configPath, restController, odsks, Objects.requireNonNull(principalExtractor)));
+            handlers.add(new OpenDistroSecuritySSLInfoAction(settings, configPath, restController, odsks, Objects.requireNonNull(principalExtractor), sslStats));
         }
         
         return handlers;
@@ -262,7 +299,7 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
         Map<String, Supplier<Transport>> transports = new HashMap<String, Supplier<Transport>>();
         if (transportSSLEnabled) {
             transports.put("com.amazon.opendistroforelasticsearch.security.ssl.http.netty.OpenDistroSecuritySSLNettyTransport", 
-                    () -> new OpenDistroSecuritySSLNettyTransport(settings, threadPool, networkService, bigArrays, namedWriteableRegistry, circuitBreakerService, odsks, NOOP_SSL_EXCEPTION_HANDLER));
+                    () -> sslTransport = new OpenDistroSecuritySSLNettyTransport(settings, threadPool, networkService, bigArrays, namedWriteableRegistry, circuitBreakerService, odsks, NOOP_SSL_EXCEPTION_HANDLER, sslStats));
         }
         return transports;
 
@@ -298,14 +335,49 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
         
         components.add(principalExtractor);
         
+        if(httpSSLEnabled && settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_VALIDATE, false)
+                && !settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_CRLDP, false)
+                && settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_ENABLED, false)) {
+            try {
+                crlPrefetcher = new CrlPrefetcher(RevocationStore.getDefault(), SSLRequestHelper.getValidator(settings, configPath).getTrustedCertificates(),
+                        threadPool, settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_INTERVAL, TimeValue.timeValueHours(1)));
+                crlPrefetcher.start();
+            } catch (Exception e) {
+                log.error("Unable to start CRL prefetcher due to", e);
+                throw new ElasticsearchException(e);
+            }
+        }
+        
+        if(transportSSLEnabled && settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_WARMUP_ENABLED, false)) {
+            transportWarmer = new SSLTransportWarmer(() -> sslTransport, threadPool,
+                    settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_WARMUP_INTERVAL, TimeValue.timeValueMillis(200)), sslStats);
+            clusterService.addListener(transportWarmer);
+        }
+        
         return components;
     }
+    
+    @Override
+    public void close() throws IOException {
+        if(crlPrefetcher != null) {
+            crlPrefetcher.close();
+        }
+        
+        if(transportWarmer != null) {
+            transportWarmer.close();
+        }
+        
+        if(odsks instanceof Closeable) {
+            ((Closeable) odsks).close();
+        }
+    }
 
     @Override
     public List<Setting<?>> getSettings() {
         List<Setting<?>> settings = new ArrayList<Setting<?>>();
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CLIENTAUTH_MODE, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_ALIAS, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_ADDITIONAL_ALIASES, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_FILEPATH, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_PASSWORD, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_TYPE, Property.NodeScope, Property.Filtered));
@@ -319,7 +391,11 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENABLED, SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENABLED_DEFAULT, Property.NodeScope, Property.Filtered));
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENFORCE_HOSTNAME_VERIFICATION, true, Property.NodeScope, Property.Filtered));
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENFORCE_HOSTNAME_VERIFICATION_RESOLVE_HOST_NAME, true, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_WARMUP_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_WARMUP_INTERVAL, TimeValue.timeValueMillis(200), TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_RESOLVE_HOSTNAME_CACHE_TTL, TimeValue.timeValueSeconds(60), TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_ALIAS, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_ADDITIONAL_ALIASES, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_FILEPATH, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_PASSWORD, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_TYPE, Property.NodeScope, Property.Filtered));
@@ -336,21 +412,67 @@ public class OpenDistroSecuritySSLPlugin extends Plugin implements ActionPlugin,
 
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMCERT_FILEPATH, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_FILEPATH, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMCERT_ADDITIONAL_FILEPATHS, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_ADDITIONAL_FILEPATHS, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_PASSWORD, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMTRUSTEDCAS_FILEPATH, Property.NodeScope, Property.Filtered));
 
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMCERT_FILEPATH, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_FILEPATH, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMCERT_ADDITIONAL_FILEPATHS, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_ADDITIONAL_FILEPATHS, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_PASSWORD, Property.NodeScope, Property.Filtered));
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMTRUSTEDCAS_FILEPATH, Property.NodeScope, Property.Filtered));
 
         settings.add(Setting.simpleString(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_FILE, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_HANDSHAKE_TIMEOUT, SslHandlerFactory.DEFAULT_HANDSHAKE_TIMEOUT, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CLOSE_NOTIFY_FLUSH_TIMEOUT, SslHandlerFactory.DEFAULT_CLOSE_NOTIFY_FLUSH_TIMEOUT, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CLOSE_NOTIFY_READ_TIMEOUT, SslHandlerFactory.DEFAULT_CLOSE_NOTIFY_READ_TIMEOUT, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.byteSizeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_WRAP_DATA_SIZE, SslHandlerFactory.DEFAULT_WRAP_DATA_SIZE, new ByteSizeValue(512), new ByteSizeValue(64, ByteSizeUnit.KB), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_SUMMARY_INTERVAL, SslFailureReporter.DEFAULT_SUMMARY_INTERVAL, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.intSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_ERROR_STACKTRACE_SAMPLE_RATE, SslFailureReporter.DEFAULT_ERROR_STACKTRACE_SAMPLE_RATE, 0, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.intSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_WARN_STACKTRACE_SAMPLE_RATE, SslFailureReporter.DEFAULT_WARN_STACKTRACE_SAMPLE_RATE, 0, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.intSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_MAX_FAILURES, HandshakeFailureTracker.DEFAULT_MAX_FAILURES, 1, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_DECAY, HandshakeFailureTracker.DEFAULT_DECAY, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_BLOCK_DURATION, HandshakeFailureTracker.DEFAULT_BLOCK_DURATION, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.listSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ALLOWLIST, Collections.emptyList(), Function.identity(), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_OPENSSL_KEY_MATERIAL_CACHE_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_PROBE_CACHE_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_CIPHER_BENCHMARK_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.byteSizeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_BYTES_PER_ENGINE, SslEngineMemoryAccounting.DEFAULT_BYTES_PER_ENGINE, new ByteSizeValue(0), new ByteSizeValue(16, ByteSizeUnit.MB), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PLAINTEXT_REJECTION_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(new Setting<>(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PLAINTEXT_REJECTION_RESPONSE, "close", PlaintextRejectionHandler.Response::parse, Property.NodeScope, Property.Filtered));
+        settings.add(new Setting<>(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ENGINE_ALLOCATOR, "channel", SslHandlerFactory.EngineAllocator::parse, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.byteSizeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_SMALL_RECORD_SIZE, new ByteSizeValue(1400), new ByteSizeValue(512), new ByteSizeValue(16, ByteSizeUnit.KB), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.byteSizeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_THRESHOLD, new ByteSizeValue(1, ByteSizeUnit.MB), new ByteSizeValue(0), new ByteSizeValue(Integer.MAX_VALUE), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_IDLE_TIMEOUT, TimeValue.timeValueSeconds(1), TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_OPENSSL_RELEASE_BUFFERS_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_HANDSHAKE_TIMEOUT, SslHandlerFactory.DEFAULT_HANDSHAKE_TIMEOUT, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_CLOSE_NOTIFY_FLUSH_TIMEOUT, SslHandlerFactory.DEFAULT_CLOSE_NOTIFY_FLUSH_TIMEOUT, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_CLOSE_NOTIFY_READ_TIMEOUT, SslHandlerFactory.DEFAULT_CLOSE_NOTIFY_READ_TIMEOUT, TimeValue.timeValueMillis(0), Property.NodeScope, Property.Filtered));
+        settings.add(Setting.byteSizeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_WRAP_DATA_SIZE, SslHandlerFactory.DEFAULT_WRAP_DATA_SIZE, new ByteSizeValue(512), new ByteSizeValue(64, ByteSizeUnit.KB), Property.NodeScope, Property.Filtered));
+        settings.add(new Setting<>(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENGINE_ALLOCATOR, "channel", SslHandlerFactory.EngineAllocator::parse, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PLAINTEXT_REJECTION_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.intSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_EXPLICIT_FLUSH_AFTER_FLUSHES, FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, 1, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_WHEN_NO_READ_IN_PROGRESS, false, Property.NodeScope, Property.Filtered));
+
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_VALIDATE, false, Property.NodeScope, Property.Filtered));
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFER_CRLFILE_OVER_OCSP, false, Property.NodeScope, Property.Filtered));
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_CHECK_ONLY_END_ENTITIES, true, Property.NodeScope, Property.Filtered));
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_CRLDP, false, Property.NodeScope, Property.Filtered));
         settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_OCSP, false, Property.NodeScope, Property.Filtered));
         settings.add(Setting.longSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_VALIDATION_DATE, -1, -1, Property.NodeScope, Property.Filtered));
+        
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_FAST_PATH_ENABLED, true, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_INTERVAL, TimeValue.timeValueHours(1), TimeValue.timeValueSeconds(1), Property.NodeScope, Property.Filtered));
+        
+        settings.add(Setting.boolSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_ENABLED, false, Property.NodeScope, Property.Filtered));
+        settings.add(Setting.timeSetting(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_TIMEOUT, TimeValue.timeValueSeconds(10), TimeValue.timeValueMillis(1), Property.NodeScope, Property.Filtered));
         return settings;
     }
 
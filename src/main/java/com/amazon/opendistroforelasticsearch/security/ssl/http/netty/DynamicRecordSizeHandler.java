@@ -0,0 +1,105 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.concurrent.PromiseCombiner;
+
+/**
+ * Sits on the outbound side of the http {@link SslHandler} and switches its wrap size between small
+ * TLS records (new connection or after idle, so that clients can start decrypting the first bytes
+ * of a response right away) and full size records (bulk transfer, less per record overhead).
+ * <p>
+ * Records are small until {@code threshold} bytes were written, the write crossing the threshold is
+ * split so that the small records are flushed before the wrap size is raised. After {@code idleNanos}
+ * without writes the connection starts over with small records.
+ */
+public class DynamicRecordSizeHandler extends ChannelOutboundHandlerAdapter {
+
+    private final SslHandler sslHandler;
+    private final int smallRecordSize;
+    private final int fullRecordSize;
+    private final long threshold;
+    private final long idleNanos;
+
+    //only accessed from the event loop
+    private boolean small = true;
+    private long bytesWritten;
+    private long lastWriteNanos = System.nanoTime();
+
+    public DynamicRecordSizeHandler(final SslHandler sslHandler, final int smallRecordSize, final int fullRecordSize, final long threshold,
+            final long idleNanos) {
+        this.sslHandler = sslHandler;
+        this.smallRecordSize = smallRecordSize;
+        this.fullRecordSize = fullRecordSize;
+        this.threshold = threshold;
+        this.idleNanos = idleNanos;
+        sslHandler.setWrapDataSize(smallRecordSize);
+    }
+
+    @Override
+    public void write(final ChannelHandlerContext ctx, final Object msg, final ChannelPromise promise) throws Exception {
+
+        if (!(msg instanceof ByteBuf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final long now = System.nanoTime();
+
+        if (now - lastWriteNanos > idleNanos) {
+            bytesWritten = 0;
+            if (!small) {
+                small = true;
+                sslHandler.setWrapDataSize(smallRecordSize);
+            }
+        }
+
+        lastWriteNanos = now;
+
+        final ByteBuf buf = (ByteBuf) msg;
+        final long remaining = threshold - bytesWritten;
+
+        if (!small || buf.readableBytes() < remaining) {
+            bytesWritten += buf.readableBytes();
+            ctx.write(msg, promise);
+            return;
+        }
+
+        final PromiseCombiner combiner = new PromiseCombiner();
+
+        if (remaining > 0) {
+            final ChannelPromise headPromise = ctx.newPromise();
+            combiner.add(headPromise);
+            ctx.write(buf.readRetainedSlice((int) remaining), headPromise);
+        }
+
+        //wrap everything up to the threshold with small records before switching
+        ctx.flush();
+        small = false;
+        bytesWritten = threshold;
+        sslHandler.setWrapDataSize(fullRecordSize);
+
+        final ChannelPromise tailPromise = ctx.newPromise();
+        combiner.add(tailPromise);
+        ctx.write(buf, tailPromise);
+        combiner.finish(promise);
+    }
+}
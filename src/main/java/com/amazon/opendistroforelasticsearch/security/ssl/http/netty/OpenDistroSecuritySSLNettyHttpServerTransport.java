@@ -33,37 +33,89 @@ package com.amazon.opendistroforelasticsearch.security.ssl.http.netty;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.DecoderException;
-import io.netty.handler.ssl.NotSslRecordException;
 import io.netty.handler.ssl.SslHandler;
 
-import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLHandshakeException;
-
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.http.netty4.Netty4HttpServerTransport;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import com.amazon.opendistroforelasticsearch.security.ssl.OpenDistroSecurityKeyStore;
 import com.amazon.opendistroforelasticsearch.security.ssl.SslExceptionHandler;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.HandshakeFailureTracker;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.PlaintextRejectionHandler;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslEngineMemoryAccounting;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslFailureReporter;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslHandlerFactory;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
 
 public class OpenDistroSecuritySSLNettyHttpServerTransport extends Netty4HttpServerTransport {
 
     private final OpenDistroSecurityKeyStore sgks;
     private final ThreadContext threadContext;
     private final SslExceptionHandler errorHandler;
+    private final SslHandlerFactory sslHandlerFactory;
+    private final SslFailureReporter failureReporter;
+    private final boolean dynamicRecordSize;
+    private final int smallRecordSize;
+    private final long recordSizeThreshold;
+    private final TimeValue recordSizeIdleTimeout;
+    private final boolean plaintextRejection;
+    private final PlaintextRejectionHandler.Response plaintextResponse;
+    private final HandshakeFailureTracker handshakeFailureTracker;
+    private final SslEngineMemoryAccounting engineMemoryAccounting;
+    private final SslStats stats;
     
     public OpenDistroSecuritySSLNettyHttpServerTransport(final Settings settings, final NetworkService networkService, final BigArrays bigArrays,
             final ThreadPool threadPool, final OpenDistroSecurityKeyStore sgks, final NamedXContentRegistry namedXContentRegistry, final ValidatingDispatcher dispatcher,
             final SslExceptionHandler errorHandler) {
+        this(settings, networkService, bigArrays, threadPool, sgks, namedXContentRegistry, dispatcher, errorHandler, null, new SslStats());
+    }
+    
+    /**
+     * @param circuitBreakerService breaker to charge the engine memory to (if enabled), may be null
+     * @param stats the stats of the plugin instance this transport belongs to
+     */
+    public OpenDistroSecuritySSLNettyHttpServerTransport(final Settings settings, final NetworkService networkService, final BigArrays bigArrays,
+            final ThreadPool threadPool, final OpenDistroSecurityKeyStore sgks, final NamedXContentRegistry namedXContentRegistry, final ValidatingDispatcher dispatcher,
+            final SslExceptionHandler errorHandler, final CircuitBreakerService circuitBreakerService, final SslStats stats) {
         super(settings, networkService, bigArrays, threadPool, namedXContentRegistry, dispatcher);
         this.sgks = sgks;
         this.threadContext = threadPool.getThreadContext();
         this.errorHandler = errorHandler;
+        this.stats = stats;
+        this.sslHandlerFactory = new SslHandlerFactory(settings, true);
+        this.failureReporter = new SslFailureReporter(settings, logger, stats);
+        this.dynamicRecordSize = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_ENABLED, false);
+        this.smallRecordSize = settings.getAsBytesSize(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_SMALL_RECORD_SIZE, new ByteSizeValue(1400)).bytesAsInt();
+        this.recordSizeThreshold = settings.getAsBytesSize(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_THRESHOLD, new ByteSizeValue(1, ByteSizeUnit.MB)).getBytes();
+        this.recordSizeIdleTimeout = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_IDLE_TIMEOUT, TimeValue.timeValueSeconds(1));
+        this.plaintextRejection = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PLAINTEXT_REJECTION_ENABLED, false);
+        this.plaintextResponse = PlaintextRejectionHandler.Response.parse(settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PLAINTEXT_REJECTION_RESPONSE, "close"));
+        this.handshakeFailureTracker = HandshakeFailureTracker.isEnabled(settings) ? new HandshakeFailureTracker(settings) : null;
+        this.engineMemoryAccounting = circuitBreakerService != null && SslEngineMemoryAccounting.isEnabled(settings)
+                ? new SslEngineMemoryAccounting(settings, circuitBreakerService, stats) : null;
+    }
+
+    @Override
+    protected void doStart() {
+        super.doStart();
+        failureReporter.start(threadPool);
+    }
+
+    @Override
+    protected void doClose() {
+        failureReporter.close();
+        super.doClose();
     }
 
     @Override
@@ -75,22 +127,11 @@ public class OpenDistroSecuritySSLNettyHttpServerTransport extends Netty4HttpSer
     protected final void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         if(this.lifecycle.started()) {
             
-            if(cause instanceof DecoderException && cause != null) {
-                cause = cause.getCause();
-            }
+            cause = SslFailureReporter.unwrap(cause);
             
             errorHandler.logError(cause, true);
             
-            if(cause instanceof NotSslRecordException) {
-                logger.warn("Someone ({}) speaks http plaintext instead of ssl, will close the channel", ctx.channel().remoteAddress());
-                ctx.channel().close();
-                return;
-            } else if (cause instanceof SSLException) {
-                logger.error("SSL Problem "+cause.getMessage(),cause);
-                ctx.channel().close();
-                return;
-            } else if (cause instanceof SSLHandshakeException) {
-                logger.error("Problem during handshake "+cause.getMessage());
+            if(failureReporter.reportSslFailure(true, "http", cause, ctx.channel().remoteAddress())) {
                 ctx.channel().close();
                 return;
             }
@@ -108,9 +149,44 @@ public class OpenDistroSecuritySSLNettyHttpServerTransport extends Netty4HttpSer
 
         @Override
         protected void initChannel(Channel ch) throws Exception {
+            
+            if(handshakeFailureTracker != null && handshakeFailureTracker.isBlocked(ch.remoteAddress())) {
+                stats.onConnectionBlocked(true);
+                ch.close();
+                return;
+            }
+            
+            if(engineMemoryAccounting != null) {
+                try {
+                    engineMemoryAccounting.reserve(ch);
+                } catch (final CircuitBreakingException e) {
+                    stats.onBreakerRejected(true);
+                    failureReporter.report("http", e, ch.remoteAddress());
+                    ch.close();
+                    return;
+                }
+            }
+            
             super.initChannel(ch);
-            final SslHandler sslHandler = new SslHandler(OpenDistroSecuritySSLNettyHttpServerTransport.this.sgks.createHTTPSSLEngine());
+            final SslHandler sslHandler = sslHandlerFactory.create(OpenDistroSecuritySSLNettyHttpServerTransport.this.sgks.createHTTPSSLEngine(sslHandlerFactory.getEngineAllocator(ch)));
             ch.pipeline().addFirst("ssl_http", sslHandler);
+            
+            if(engineMemoryAccounting != null) {
+                engineMemoryAccounting.releaseAfterHandshake(ch, sslHandler);
+            }
+            
+            if(handshakeFailureTracker != null) {
+                handshakeFailureTracker.watch(sslHandler, ch.remoteAddress());
+            }
+            
+            if(dynamicRecordSize) {
+                ch.pipeline().addAfter("ssl_http", "dynamic_record_size", new DynamicRecordSizeHandler(sslHandler, smallRecordSize,
+                        sslHandlerFactory.getWrapDataSize(), recordSizeThreshold, recordSizeIdleTimeout.nanos()));
+            }
+            
+            if(plaintextRejection) {
+                ch.pipeline().addFirst("plaintext_rejection", new PlaintextRejectionHandler(true, plaintextResponse, stats, handshakeFailureTracker));
+            }
         }
     }
 }
@@ -30,7 +30,17 @@
 
 package com.amazon.opendistroforelasticsearch.security.ssl.http.netty;
 
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 
@@ -38,40 +48,80 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
 import org.elasticsearch.http.HttpServerTransport.Dispatcher;
+import org.elasticsearch.http.netty4.Netty4HttpRequest;
+import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import com.amazon.opendistroforelasticsearch.security.ssl.SslExceptionHandler;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.ExceptionUtils;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.RevocationStore;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLRequestHelper;
 
 public class ValidatingDispatcher implements Dispatcher {
 
+    public static final String VALIDATION_THREAD_POOL_NAME = "opendistro_security_ssl_validation";
+
     private static final Logger logger = LogManager.getLogger(ValidatingDispatcher.class);
+    //the validation result only depends on the SSL session and the revocation data, so it is shared by all requests
+    //of a connection until the generation of the revocation store changes
+    private static final AttributeKey<Validation> VALIDATION_KEY = AttributeKey.valueOf("opendistro_security_ssl_validation");
 
     private final ThreadContext threadContext;
     private final Dispatcher originalDispatcher;
     private final SslExceptionHandler errorHandler;
     private final Settings settings;
     private final Path configPath;
+    private final ThreadPool threadPool;
+    private final TimeValue asyncTimeout;
 
     public ValidatingDispatcher(final ThreadContext threadContext, final Dispatcher originalDispatcher, 
             final Settings settings, final Path configPath, final SslExceptionHandler errorHandler) {
+        this(threadContext, originalDispatcher, settings, configPath, errorHandler, null);
+    }
+
+    /**
+     * @param threadPool if not null and {@link SSLConfigConstants#OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_ENABLED} is true
+     * the certificate validation runs on the {@value #VALIDATION_THREAD_POOL_NAME} thread pool instead of the network thread.
+     * The result is kept for all following requests of the connection and only validated again once CRLs of the
+     * {@link RevocationStore} change or the CRL file or truststore was reloaded. The request is dispatched on the
+     * network thread of the connection in any case.
+     */
+    public ValidatingDispatcher(final ThreadContext threadContext, final Dispatcher originalDispatcher, 
+            final Settings settings, final Path configPath, final SslExceptionHandler errorHandler, final ThreadPool threadPool) {
         super();
         this.threadContext = threadContext;
         this.originalDispatcher = originalDispatcher;
         this.settings = settings;
         this.configPath = configPath;
         this.errorHandler = errorHandler;
+        this.threadPool = isAsyncValidationEnabled(settings) ? threadPool : null;
+        this.asyncTimeout = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_TIMEOUT, TimeValue.timeValueSeconds(10));
+    }
+
+    public static boolean isAsyncValidationEnabled(final Settings settings) {
+        return settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_ENABLED, false);
     }
 
     @Override
     public void dispatchRequest(RestRequest request, RestChannel channel, ThreadContext threadContext) {
+        
+        if(threadPool != null && request instanceof Netty4HttpRequest) {
+            checkBadHeader(request);
+            dispatchAsync(request, channel, threadContext);
+            return;
+        }
+        
         checkRequest(request, channel);
         originalDispatcher.dispatchRequest(request, channel, threadContext);
     }
@@ -83,13 +133,19 @@ public class ValidatingDispatcher implements Dispatcher {
     }
     
     protected void checkRequest(final RestRequest request, final RestChannel channel) {
-        
+        checkBadHeader(request);
+        checkSSL(request);
+    }
+    
+    private void checkBadHeader(final RestRequest request) {
         if(SSLRequestHelper.containsBadHeader(threadContext, "_opendistro_security_ssl_")) {
             final ElasticsearchException exception = ExceptionUtils.createBadHeaderException();
             errorHandler.logError(exception, request, 1);
             throw exception;
         }
-        
+    }
+    
+    private void checkSSL(final RestRequest request) {
         try {
             if(SSLRequestHelper.getSSLInfo(settings, configPath, request, null) == null) {
                 logger.error("Not an SSL request");
@@ -101,4 +157,117 @@ public class ValidatingDispatcher implements Dispatcher {
             throw ExceptionsHelper.convertToElastic(e);
         }
     }
+    
+    private void dispatchAsync(final RestRequest request, final RestChannel channel, final ThreadContext threadContext) {
+        
+        final Channel nettyChannel = ((Netty4HttpRequest) request).getChannel();
+        final CompletableFuture<Void> validation = getValidation(request, nettyChannel);
+        
+        //fast path for all but the first request of a connection (and for rejected or failed validations)
+        if(validation.isDone()) {
+            try {
+                validation.join();
+            } catch (Exception e) {
+                sendError(channel, unwrap(e));
+                return;
+            }
+            
+            originalDispatcher.dispatchRequest(request, channel, threadContext);
+            return;
+        }
+        
+        final Supplier<StoredContext> restorableContext = threadContext.newRestorableContext(false);
+        final AtomicBoolean responded = new AtomicBoolean();
+        
+        //timeout and dispatch run on the network thread of the connection, like a synchronously validated request
+        final ScheduledFuture<?> timeout = nettyChannel.eventLoop().schedule(() -> {
+            if(responded.compareAndSet(false, true)) {
+                logger.warn("Certificate validation did not complete within {}", asyncTimeout);
+                try(StoredContext ctx = restorableContext.get()) {
+                    sendError(channel, new ElasticsearchStatusException("Certificate validation timed out", RestStatus.SERVICE_UNAVAILABLE));
+                }
+            }
+        }, asyncTimeout.millis(), TimeUnit.MILLISECONDS);
+        
+        validation.whenCompleteAsync((r, e) -> {
+            
+            if(!responded.compareAndSet(false, true)) {
+                return;
+            }
+            
+            timeout.cancel(false);
+            
+            try(StoredContext ctx = restorableContext.get()) {
+                if(e == null) {
+                    originalDispatcher.dispatchRequest(request, channel, threadContext);
+                } else {
+                    sendError(channel, unwrap(e));
+                }
+            } catch (Exception ex) {
+                sendError(channel, ex);
+            }
+        }, nettyChannel.eventLoop());
+    }
+    
+    private CompletableFuture<Void> getValidation(final RestRequest request, final Channel nettyChannel) {
+        
+        final Attribute<Validation> attribute = nettyChannel.attr(VALIDATION_KEY);
+        final long generation = RevocationStore.getDefault().getGeneration();
+        
+        for(;;) {
+            final Validation existingValidation = attribute.get();
+            
+            //a validation still running is awaited even if it started with an older generation
+            if(existingValidation != null && (existingValidation.generation == generation || !existingValidation.result.isDone())) {
+                return existingValidation.result;
+            }
+            
+            final Validation newValidation = new Validation(generation);
+            
+            if(attribute.compareAndSet(existingValidation, newValidation)) {
+                validate(request, attribute, newValidation);
+                return newValidation.result;
+            }
+        }
+    }
+    
+    private void validate(final RestRequest request, final Attribute<Validation> attribute, final Validation validation) {
+        try {
+            threadPool.executor(VALIDATION_THREAD_POOL_NAME).execute(() -> {
+                try {
+                    checkSSL(request);
+                    validation.result.complete(null);
+                } catch (Exception e) {
+                    validation.result.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            //rejected because of overload, let the next request of this connection try again
+            attribute.compareAndSet(validation, null);
+            validation.result.completeExceptionally(e);
+        }
+    }
+    
+    private static Exception unwrap(final Throwable e) {
+        final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof Exception ? (Exception) cause : new ElasticsearchException(cause);
+    }
+    
+    private static void sendError(final RestChannel channel, final Exception e) {
+        try {
+            channel.sendResponse(new BytesRestResponse(channel, e));
+        } catch (Exception inner) {
+            inner.addSuppressed(e);
+            logger.error("Failed to send failure response", inner);
+        }
+    }
+    
+    private static final class Validation {
+        private final long generation;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        
+        private Validation(final long generation) {
+            this.generation = generation;
+        }
+    }
 }
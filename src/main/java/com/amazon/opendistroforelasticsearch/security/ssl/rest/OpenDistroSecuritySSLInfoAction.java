@@ -37,6 +37,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.elasticsearch.client.node.NodeClient;
@@ -51,18 +54,32 @@ import org.elasticsearch.rest.RestStatus;
 
 import com.amazon.opendistroforelasticsearch.security.ssl.OpenDistroSecurityKeyStore;
 import com.amazon.opendistroforelasticsearch.security.ssl.transport.PrincipalExtractor;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CipherBenchmark;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.KernelTls;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLRequestHelper;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLRequestHelper.SSLInfo;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SignatureCache;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
 
 public class OpenDistroSecuritySSLInfoAction extends BaseRestHandler {
 
     private final OpenDistroSecurityKeyStore sgks;
     final PrincipalExtractor principalExtractor;
     private final Path configPath;
+    private final SslStats stats;
 
     public OpenDistroSecuritySSLInfoAction(final Settings settings, final Path configPath, final RestController controller,
             final OpenDistroSecurityKeyStore sgks, final PrincipalExtractor principalExtractor) {
+        this(settings, configPath, controller, sgks, principalExtractor, new SslStats());
+    }
+
+    /**
+     * @param stats the stats of the plugin instance, reported along with the TLS details
+     */
+    public OpenDistroSecuritySSLInfoAction(final Settings settings, final Path configPath, final RestController controller,
+            final OpenDistroSecurityKeyStore sgks, final PrincipalExtractor principalExtractor, final SslStats stats) {
         super(settings);
+        this.stats = stats;
         this.sgks = sgks;
         this.principalExtractor = principalExtractor;
         this.configPath = configPath;
@@ -105,6 +122,25 @@ public class OpenDistroSecuritySSLInfoAction extends BaseRestHandler {
                     builder.field("ssl_openssl_non_available_cause", openSslUnavailCause==null?"":openSslUnavailCause.toString());
                     builder.field("ssl_openssl_supports_key_manager_factory", OpenSsl.supportsKeyManagerFactory());
                     builder.field("ssl_openssl_supports_hostname_validation", OpenSsl.supportsHostnameValidation());
+                    builder.field("ssl_ktls_kernel_support", KernelTls.isKernelSupported());
+                    builder.field("ssl_ktls_kernel_support_cause", KernelTls.isKernelSupported()?"":KernelTls.kernelUnsupportedCause());
+                    builder.field("ssl_plaintext_rejected_http", stats.getPlaintextRejectedCount(true));
+                    builder.field("ssl_plaintext_rejected_transport", stats.getPlaintextRejectedCount(false));
+                    builder.field("ssl_blocked_connections_http", stats.getBlockedConnectionCount(true));
+                    builder.field("ssl_blocked_connections_transport", stats.getBlockedConnectionCount(false));
+                    builder.field("ssl_engine_memory_estimate_bytes", stats.getEngineMemory());
+                    builder.field("ssl_breaker_rejected_http", stats.getBreakerRejectedCount(true));
+                    builder.field("ssl_breaker_rejected_transport", stats.getBreakerRejectedCount(false));
+                    builder.field("ssl_hostname_lookups", stats.getHostnameLookupCount());
+                    builder.field("ssl_hostname_lookup_time_millis", TimeUnit.NANOSECONDS.toMillis(stats.getHostnameLookupNanos()));
+                    builder.field("ssl_hostname_cache_hits", stats.getHostnameCacheHitCount());
+                    builder.field("ssl_signature_cache_hits", SignatureCache.getDefault().getHitCount());
+                    builder.field("ssl_signature_cache_misses", SignatureCache.getDefault().getMissCount());
+                    builder.field("ssl_transport_warmup_millis", stats.getTransportWarmupMillis());
+                    builder.field("ssl_cipher_preference_http", cipherPreference(sgks.getCipherBenchmark(true)));
+                    builder.field("ssl_cipher_preference_transport", cipherPreference(sgks.getCipherBenchmark(false)));
+                    builder.field("ssl_cipher_benchmark_mb_per_sec_http", cipherThroughput(sgks.getCipherBenchmark(true)));
+                    builder.field("ssl_cipher_benchmark_mb_per_sec_transport", cipherThroughput(sgks.getCipherBenchmark(false)));
                     builder.field("ssl_provider_http", sgks.getHTTPProviderName());
                     builder.field("ssl_provider_transport_server", sgks.getTransportServerProviderName());
                     builder.field("ssl_provider_transport_client", sgks.getTransportClientProviderName());
@@ -129,6 +165,21 @@ public class OpenDistroSecuritySSLInfoAction extends BaseRestHandler {
         };
     }
 
+    private static String cipherPreference(final CipherBenchmark.Result benchmark) {
+        return benchmark == null ? null : benchmark.getPreferred().toString();
+    }
+
+    private static Map<String, Long> cipherThroughput(final CipherBenchmark.Result benchmark) {
+        if (benchmark == null) {
+            return null;
+        }
+        final Map<String, Long> throughput = new TreeMap<>();
+        for (final Map.Entry<CipherBenchmark.Family, Long> entry : benchmark.getThroughput().entrySet()) {
+            throughput.put(entry.getKey().toString(), entry.getValue());
+        }
+        return throughput;
+    }
+
     @Override
     public String getName() {
         return "Open Distro Security SSL Info";
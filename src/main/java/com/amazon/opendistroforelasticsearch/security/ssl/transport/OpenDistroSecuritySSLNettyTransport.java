@@ -35,24 +35,25 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
-import io.netty.handler.codec.DecoderException;
-import io.netty.handler.ssl.NotSslRecordException;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslHandler;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLHandshakeException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
 import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
 import org.elasticsearch.common.network.NetworkService;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -61,19 +62,80 @@ import org.elasticsearch.transport.netty4.Netty4Transport;
 
 import com.amazon.opendistroforelasticsearch.security.ssl.OpenDistroSecurityKeyStore;
 import com.amazon.opendistroforelasticsearch.security.ssl.SslExceptionHandler;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.HandshakeFailureTracker;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.HostnameResolver;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.PlaintextRejectionHandler;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslEngineMemoryAccounting;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslFailureReporter;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslHandlerFactory;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
 
 public class OpenDistroSecuritySSLNettyTransport extends Netty4Transport {
 
     private final OpenDistroSecurityKeyStore sgks;
     private final SslExceptionHandler errorHandler;
+    private final SslHandlerFactory sslHandlerFactory;
+    private final SslFailureReporter failureReporter;
+    private final boolean flushConsolidationEnabled;
+    private final int explicitFlushAfterFlushes;
+    private final boolean consolidateWhenNoReadInProgress;
+    private final boolean plaintextRejection;
+    private final HandshakeFailureTracker handshakeFailureTracker;
+    private final SslEngineMemoryAccounting engineMemoryAccounting;
+    private final HostnameResolver hostnameResolver;
+    private final SslStats stats;
 
     public OpenDistroSecuritySSLNettyTransport(final Settings settings, final ThreadPool threadPool, final NetworkService networkService,
             final BigArrays bigArrays, final NamedWriteableRegistry namedWriteableRegistry,
             final CircuitBreakerService circuitBreakerService, final OpenDistroSecurityKeyStore sgks, final SslExceptionHandler errorHandler) {
+        this(settings, threadPool, networkService, bigArrays, namedWriteableRegistry, circuitBreakerService, sgks, errorHandler, new SslStats());
+    }
+
+    /**
+     * @param stats the stats of the plugin instance this transport belongs to
+     */
+    public OpenDistroSecuritySSLNettyTransport(final Settings settings, final ThreadPool threadPool, final NetworkService networkService,
+            final BigArrays bigArrays, final NamedWriteableRegistry namedWriteableRegistry, final CircuitBreakerService circuitBreakerService,
+            final OpenDistroSecurityKeyStore sgks, final SslExceptionHandler errorHandler, final SslStats stats) {
         super(settings, threadPool, networkService, bigArrays, namedWriteableRegistry, circuitBreakerService);
         this.sgks = sgks;
         this.errorHandler = errorHandler;
+        this.stats = stats;
+        this.sslHandlerFactory = new SslHandlerFactory(settings, false);
+        this.failureReporter = new SslFailureReporter(settings, logger, stats);
+        this.flushConsolidationEnabled = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_ENABLED, false);
+        this.explicitFlushAfterFlushes = settings.getAsInt(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_EXPLICIT_FLUSH_AFTER_FLUSHES,
+                FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES);
+        this.consolidateWhenNoReadInProgress = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_WHEN_NO_READ_IN_PROGRESS, false);
+        this.plaintextRejection = settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_PLAINTEXT_REJECTION_ENABLED, false);
+        this.handshakeFailureTracker = HandshakeFailureTracker.isEnabled(settings) ? new HandshakeFailureTracker(settings) : null;
+        this.engineMemoryAccounting = circuitBreakerService != null && SslEngineMemoryAccounting.isEnabled(settings)
+                ? new SslEngineMemoryAccounting(settings, circuitBreakerService, stats) : null;
+        this.hostnameResolver = new HostnameResolver(threadPool.generic(), settings.getAsTime(
+                SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_RESOLVE_HOSTNAME_CACHE_TTL, TimeValue.timeValueSeconds(60)), stats);
+    }
+    
+    /**
+     * Adds a flush consolidation stage on the outbound side of the ssl handler (if enabled), so that
+     * several small messages end up in one TLS record and one write syscall
+     */
+    private void addFlushConsolidation(final Channel ch, final String sslHandlerName) {
+        if(flushConsolidationEnabled) {
+            ch.pipeline().addAfter(sslHandlerName, "flush_consolidation", new FlushConsolidationHandler(explicitFlushAfterFlushes, consolidateWhenNoReadInProgress));
+        }
+    }
+
+    @Override
+    protected void doStart() {
+        super.doStart();
+        failureReporter.start(threadPool);
+    }
+
+    @Override
+    protected void stopInternal() {
+        failureReporter.close();
+        super.stopInternal();
     }
 
     @Override
@@ -82,24 +144,11 @@ public class OpenDistroSecuritySSLNettyTransport extends Netty4Transport {
         
         if (lifecycle.started()) {
             
-            Throwable cause = e;
-            
-            if(e instanceof DecoderException && e != null) {
-                cause = e.getCause();
-            }
+            final Throwable cause = SslFailureReporter.unwrap(e);
             
             errorHandler.logError(cause, false);
             
-            if(cause instanceof NotSslRecordException) {
-                logger.warn("Someone ({}) speaks transport plaintext instead of ssl, will close the channel", channel.getLocalAddress());
-                TcpChannel.closeChannel(channel, false);
-                return;
-            } else if (cause instanceof SSLException) {
-                logger.error("SSL Problem "+cause.getMessage(),cause);
-                TcpChannel.closeChannel(channel, false);
-                return;
-            } else if (cause instanceof SSLHandshakeException) {
-                logger.error("Problem during handshake "+cause.getMessage());
+            if(failureReporter.reportSslFailure(false, "transport", cause, channel.getRemoteAddress())) {
                 TcpChannel.closeChannel(channel, false);
                 return;
             }
@@ -125,31 +174,51 @@ public class OpenDistroSecuritySSLNettyTransport extends Netty4Transport {
 
         @Override
         protected void initChannel(Channel ch) throws Exception {
+            
+            if(handshakeFailureTracker != null && handshakeFailureTracker.isBlocked(ch.remoteAddress())) {
+                stats.onConnectionBlocked(false);
+                ch.close();
+                return;
+            }
+            
+            if(engineMemoryAccounting != null) {
+                try {
+                    engineMemoryAccounting.reserve(ch);
+                } catch (final CircuitBreakingException e) {
+                    stats.onBreakerRejected(false);
+                    failureReporter.report("transport", e, ch.remoteAddress());
+                    ch.close();
+                    return;
+                }
+            }
+            
             super.initChannel(ch);
-            final SslHandler sslHandler = new SslHandler(sgks.createServerTransportSSLEngine());
+            final SslHandler sslHandler = sslHandlerFactory.create(sgks.createServerTransportSSLEngine(sslHandlerFactory.getEngineAllocator(ch)));
             ch.pipeline().addFirst("ssl_server", sslHandler);
+            
+            if(engineMemoryAccounting != null) {
+                engineMemoryAccounting.releaseAfterHandshake(ch, sslHandler);
+            }
+            
+            if(handshakeFailureTracker != null) {
+                handshakeFailureTracker.watch(sslHandler, ch.remoteAddress());
+            }
+            addFlushConsolidation(ch, "ssl_server");
+            
+            if(plaintextRejection) {
+                ch.pipeline().addFirst("plaintext_rejection", new PlaintextRejectionHandler(false, PlaintextRejectionHandler.Response.CLOSE, stats, handshakeFailureTracker));
+            }
         }
         
         @Override
         public final void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
             if(OpenDistroSecuritySSLNettyTransport.this.lifecycle.started()) {
                 
-                if(cause instanceof DecoderException && cause != null) {
-                    cause = cause.getCause();
-                }
+                cause = SslFailureReporter.unwrap(cause);
                 
                 errorHandler.logError(cause, false);
                 
-                if(cause instanceof NotSslRecordException) {
-                    logger.warn("Someone ({}) speaks transport plaintext instead of ssl, will close the channel", ctx.channel().remoteAddress());
-                    ctx.channel().close();
-                    return;
-                } else if (cause instanceof SSLException) {
-                    logger.error("SSL Problem "+cause.getMessage(),cause);
-                    ctx.channel().close();
-                    return;
-                } else if (cause instanceof SSLHandshakeException) {
-                    logger.error("Problem during handshake "+cause.getMessage());
+                if(failureReporter.reportSslFailure(false, "transport", cause, ctx.channel().remoteAddress())) {
                     ctx.channel().close();
                     return;
                 }
@@ -165,35 +234,33 @@ public class OpenDistroSecuritySSLNettyTransport extends Netty4Transport {
         private final boolean hostnameVerificationEnabled;
         private final boolean hostnameVerificationResovleHostName;
         private final SslExceptionHandler errorHandler;
+        private final SslHandlerFactory sslHandlerFactory;
+        private final SslFailureReporter failureReporter;
+        private final HostnameResolver hostnameResolver;
+        private final SslEngineMemoryAccounting engineMemoryAccounting;
         
 
         private ClientSSLHandler(final OpenDistroSecurityKeyStore sgks, final boolean hostnameVerificationEnabled,
-                final boolean hostnameVerificationResovleHostName, final SslExceptionHandler errorHandler) {
+                final boolean hostnameVerificationResovleHostName, final SslExceptionHandler errorHandler, final SslHandlerFactory sslHandlerFactory,
+                final SslFailureReporter failureReporter, final HostnameResolver hostnameResolver, final SslEngineMemoryAccounting engineMemoryAccounting) {
             this.sgks = sgks;
             this.hostnameVerificationEnabled = hostnameVerificationEnabled;
             this.hostnameVerificationResovleHostName = hostnameVerificationResovleHostName;
             this.errorHandler = errorHandler;
+            this.sslHandlerFactory = sslHandlerFactory;
+            this.failureReporter = failureReporter;
+            this.hostnameResolver = hostnameResolver;
+            this.engineMemoryAccounting = engineMemoryAccounting;
         }
         
 
         @Override
         public final void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-            if(cause instanceof DecoderException && cause != null) {
-                cause = cause.getCause();
-            }
+            cause = SslFailureReporter.unwrap(cause);
             
             errorHandler.logError(cause, false);
             
-            if(cause instanceof NotSslRecordException) {
-                log.warn("Someone ({}) speaks transport plaintext instead of ssl, will close the channel", ctx.channel().remoteAddress());
-                ctx.channel().close();
-                return;
-            } else if (cause instanceof SSLException) {
-                log.error("SSL Problem "+cause.getMessage(),cause);
-                ctx.channel().close();
-                return;
-            } else if (cause instanceof SSLHandshakeException) {
-                log.error("Problem during handshake "+cause.getMessage());
+            if(failureReporter.reportSslFailure(false, "transport client", cause, ctx.channel().remoteAddress())) {
                 ctx.channel().close();
                 return;
             }
@@ -205,31 +272,67 @@ public class OpenDistroSecuritySSLNettyTransport extends Netty4Transport {
 
         @Override
         public void connect(ChannelHandlerContext ctx, SocketAddress remoteAddress, SocketAddress localAddress, ChannelPromise promise) throws Exception {
-            SSLEngine engine = null;
-            try {
-                if (hostnameVerificationEnabled) {
-                    final InetSocketAddress inetSocketAddress = (InetSocketAddress) remoteAddress;
-                    String hostname = null;
-                    if (hostnameVerificationResovleHostName) {
-                        hostname = inetSocketAddress.getHostName();
-                    } else {
-                        hostname = inetSocketAddress.getHostString();
-                    }
-
-                    if(log.isDebugEnabled()) {
-                        log.debug("Hostname of peer is {} ({}/{}) with hostnameVerificationResovleHostName: {}", hostname, inetSocketAddress.getHostName(), inetSocketAddress.getHostString(), hostnameVerificationResovleHostName);
-                    }
-                    
-                    engine = sgks.createClientTransportSSLEngine(hostname, inetSocketAddress.getPort());
-                } else {
-                    engine = sgks.createClientTransportSSLEngine(null, -1);
+            if (!hostnameVerificationEnabled) {
+                connect(ctx, null, -1, remoteAddress, localAddress, promise);
+                return;
+            }
+
+            final InetSocketAddress inetSocketAddress = (InetSocketAddress) remoteAddress;
+
+            if (!hostnameVerificationResovleHostName) {
+                connect(ctx, inetSocketAddress.getHostString(), inetSocketAddress.getPort(), remoteAddress, localAddress, promise);
+                return;
+            }
+
+            final String hostname = hostnameResolver.getCached(inetSocketAddress);
+
+            if (hostname != null) {
+                connect(ctx, hostname, inetSocketAddress.getPort(), remoteAddress, localAddress, promise);
+                return;
+            }
+
+            //reverse lookups can block, so they are done off the event loop and the connect continues once the name is known
+            hostnameResolver.resolve(inetSocketAddress).thenAccept(resolved -> {
+                try {
+                    ctx.executor().execute(() -> {
+                        if (promise.isDone()) {
+                            //cancelled meanwhile
+                            return;
+                        }
+                        try {
+                            connect(ctx, resolved, inetSocketAddress.getPort(), remoteAddress, localAddress, promise);
+                        } catch (final Exception e) {
+                            promise.tryFailure(e);
+                        }
+                    });
+                } catch (final RejectedExecutionException e) {
+                    promise.tryFailure(e);
                 }
+            });
+        }
+
+        private void connect(final ChannelHandlerContext ctx, final String hostname, final int port, final SocketAddress remoteAddress,
+                final SocketAddress localAddress, final ChannelPromise promise) {
+
+            if (hostname != null && log.isDebugEnabled()) {
+                log.debug("Hostname of peer is {} with hostnameVerificationResovleHostName: {}", hostname, hostnameVerificationResovleHostName);
+            }
+
+            final SSLEngine engine;
+            try {
+                engine = sgks.createClientTransportSSLEngine(hostname, port, sslHandlerFactory.getEngineAllocator(ctx.channel()));
             } catch (final SSLException e) {
                 throw ExceptionsHelper.convertToElastic(e);
             }
-            final SslHandler sslHandler = new SslHandler(engine);
+            final SslHandler sslHandler = sslHandlerFactory.create(engine);
+            
+            if(engineMemoryAccounting != null) {
+                engineMemoryAccounting.charge(ctx.channel());
+                engineMemoryAccounting.releaseAfterHandshake(ctx.channel(), sslHandler);
+            }
+            
             ctx.pipeline().replace(this, "ssl_client", sslHandler);
-            super.connect(ctx, remoteAddress, localAddress, promise);
+            ctx.connect(remoteAddress, localAddress, promise);
         }
     }
 
@@ -242,35 +345,32 @@ public class OpenDistroSecuritySSLNettyTransport extends Netty4Transport {
                     SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENFORCE_HOSTNAME_VERIFICATION, true);
             hostnameVerificationResovleHostName = settings.getAsBoolean(
                     SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENFORCE_HOSTNAME_VERIFICATION_RESOLVE_HOST_NAME, true);
+
+            //nodes this node connects to are cluster nodes, their inbound connections must never be blocked
+            if(handshakeFailureTracker != null && node != null) {
+                handshakeFailureTracker.allow(node.getAddress().address());
+            }
         }
 
         @Override
         protected void initChannel(Channel ch) throws Exception {
             super.initChannel(ch);
+            
             ch.pipeline().addFirst("client_ssl_handler", new ClientSSLHandler(sgks, hostnameVerificationEnabled,
-                    hostnameVerificationResovleHostName, errorHandler));
+                    hostnameVerificationResovleHostName, errorHandler, sslHandlerFactory, failureReporter, hostnameResolver, engineMemoryAccounting));
+            //client_ssl_handler is replaced by ssl_client on connect, so this ends up behind ssl_client
+            addFlushConsolidation(ch, "client_ssl_handler");
         }
         
         @Override
         public final void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
             if(OpenDistroSecuritySSLNettyTransport.this.lifecycle.started()) {
                 
-                if(cause instanceof DecoderException && cause != null) {
-                    cause = cause.getCause();
-                }
+                cause = SslFailureReporter.unwrap(cause);
                 
                 errorHandler.logError(cause, false);
                 
-                if(cause instanceof NotSslRecordException) {
-                    logger.warn("Someone ({}) speaks transport plaintext instead of ssl, will close the channel", ctx.channel().remoteAddress());
-                    ctx.channel().close();
-                    return;
-                } else if (cause instanceof SSLException) {
-                    logger.error("SSL Problem "+cause.getMessage(),cause);
-                    ctx.channel().close();
-                    return;
-                } else if (cause instanceof SSLHandshakeException) {
-                    logger.error("Problem during handshake "+cause.getMessage());
+                if(failureReporter.reportSslFailure(false, "transport client", cause, ctx.channel().remoteAddress())) {
                     ctx.channel().close();
                     return;
                 }
@@ -0,0 +1,156 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.transport;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.ConnectionProfile;
+import org.elasticsearch.transport.Transport;
+import org.elasticsearch.transport.TransportRequestOptions;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
+
+/**
+ * Opens a short lived single channel connection (TCP, mutual TLS and transport handshake) to every node
+ * which joins the cluster, so that TLS state like the key material, hostname cache and client sessions
+ * is warm before the first request. Nodes are warmed one after another with at least {@code interval}
+ * in between, so that a full cluster restart does not cause a handshake storm.
+ * <p>
+ * The time of the last warm-up per node is reported in {@link SslStats}.
+ */
+public class SSLTransportWarmer implements ClusterStateListener, Closeable {
+
+    private static final Logger log = LogManager.getLogger(SSLTransportWarmer.class);
+    private static final ConnectionProfile PROFILE = ConnectionProfile.buildSingleChannelProfile(TransportRequestOptions.Type.PING);
+
+    private final Supplier<Transport> transport;
+    private final ThreadPool threadPool;
+    private final TimeValue interval;
+    private final SslStats stats;
+    private final Queue<DiscoveryNode> queue = new ConcurrentLinkedQueue<>();
+    private final Set<DiscoveryNode> queued = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile DiscoveryNodes nodes;
+    private volatile boolean closed;
+
+    /**
+     * @param transport supplies the transport once it was created, may supply null before
+     */
+    public SSLTransportWarmer(final Supplier<Transport> transport, final ThreadPool threadPool, final TimeValue interval, final SslStats stats) {
+        this.transport = transport;
+        this.threadPool = threadPool;
+        this.interval = interval;
+        this.stats = stats;
+    }
+
+    @Override
+    public void clusterChanged(final ClusterChangedEvent event) {
+
+        nodes = event.state().nodes();
+
+        if (closed || !event.nodesChanged()) {
+            return;
+        }
+
+        for (final DiscoveryNode node : event.nodesDelta().removedNodes()) {
+            stats.removeTransportWarmup(node.getId());
+        }
+
+        for (final DiscoveryNode node : event.nodesDelta().addedNodes()) {
+            if (!node.equals(nodes.getLocalNode()) && queued.add(node)) {
+                queue.add(node);
+            }
+        }
+
+        if (!queue.isEmpty() && running.compareAndSet(false, true)) {
+            threadPool.generic().execute(this::warmNext);
+        }
+    }
+
+    private void warmNext() {
+
+        final DiscoveryNode node = queue.poll();
+
+        if (node != null) {
+            queued.remove(node);
+            final DiscoveryNodes nodes = this.nodes;
+            if (!closed && nodes != null && nodes.nodeExists(node)) {
+                warm(node);
+            }
+        }
+
+        if (!closed && !queue.isEmpty()) {
+            try {
+                threadPool.schedule(interval, ThreadPool.Names.GENERIC, this::warmNext);
+                return;
+            } catch (final Exception e) {
+                log.debug("Unable to schedule TLS warm-up due to {}", e.toString());
+            }
+        }
+
+        running.set(false);
+
+        //nodes added after the queue was seen empty
+        if (!closed && !queue.isEmpty() && running.compareAndSet(false, true)) {
+            threadPool.generic().execute(this::warmNext);
+        }
+    }
+
+    private void warm(final DiscoveryNode node) {
+
+        final Transport transport = this.transport.get();
+
+        if (transport == null) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+
+        try (Transport.Connection connection = transport.openConnection(node, PROFILE)) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            stats.onTransportWarmup(node.getId(), millis);
+
+            if (log.isDebugEnabled()) {
+                log.debug("TLS warm-up of {} took {} ms", node, millis);
+            }
+        } catch (final Exception e) {
+            log.debug("TLS warm-up of {} failed due to {}", node, e.toString());
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        queued.clear();
+    }
+}
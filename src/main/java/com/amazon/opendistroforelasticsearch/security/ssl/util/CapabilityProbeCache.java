@@ -0,0 +1,149 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Small properties file which remembers the results of the cipher and protocol probes of the JDK and
+ * OpenSSL providers across restarts. The results are only reused if the key, a digest of everything
+ * the probes depend on (JVM, OpenSSL version, security properties and the configured lists), matches.
+ * <p>
+ * The file is a pure cache: if it is missing, outdated, corrupt or cannot be written the probes just run.
+ */
+public class CapabilityProbeCache {
+
+    public static final String FILE_NAME = "opendistro_security_ssl_probes.properties";
+
+    private static final Logger log = LogManager.getLogger(CapabilityProbeCache.class);
+    private static final String KEY_PROPERTY = "key";
+    private static final String RESULT_PREFIX = "probe.";
+
+    private final Path file;
+    private final String key;
+
+    /**
+     * @param keyParts everything the probe results depend on, in a stable order
+     */
+    public CapabilityProbeCache(final Path file, final List<String> keyParts) {
+        this.file = file;
+        this.key = digest(keyParts);
+    }
+
+    /**
+     * @return the cached probe results or null if there are none for the current key
+     */
+    public Map<String, List<String>> load() {
+
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Unable to read SSL probe cache {} due to {}", file, e.toString());
+            return null;
+        }
+
+        if (!key.equals(properties.getProperty(KEY_PROPERTY))) {
+            if (log.isDebugEnabled()) {
+                log.debug("SSL probe cache {} is outdated", file);
+            }
+            return null;
+        }
+
+        final Map<String, List<String>> results = new HashMap<>();
+
+        for (final String name : properties.stringPropertyNames()) {
+            if (name.startsWith(RESULT_PREFIX)) {
+                results.put(name.substring(RESULT_PREFIX.length()), split(properties.getProperty(name)));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Replaces the cache file with the given probe results for the current key
+     */
+    public void store(final Map<String, List<String>> results) {
+
+        final Properties properties = new Properties();
+        properties.setProperty(KEY_PROPERTY, key);
+
+        for (final Map.Entry<String, List<String>> result : results.entrySet()) {
+            properties.setProperty(RESULT_PREFIX + result.getKey(), String.join(",", result.getValue()));
+        }
+
+        try {
+            //write and rename so that concurrent readers never see a partial file
+            final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "Cached SSL provider probes, safe to delete");
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to write SSL probe cache {} due to {}", file, e.toString());
+        }
+    }
+
+    private static List<String> split(final String value) {
+        if (value == null || value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(Arrays.asList(value.split(",")));
+    }
+
+    private static String digest(final List<String> keyParts) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (final String part : keyParts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                hex.append(String.format(Locale.ROOT, "%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
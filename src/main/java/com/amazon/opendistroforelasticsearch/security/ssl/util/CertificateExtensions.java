@@ -0,0 +1,234 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Minimal DER decoding of the X.509 extensions needed for revocation checking,
+ * so we do not have to depend on JDK internal sun.security.x509 classes.
+ */
+public final class CertificateExtensions {
+
+    private static final Logger log = LogManager.getLogger(CertificateExtensions.class);
+
+    static final String CRL_DISTRIBUTION_POINTS_OID = "2.5.29.31";
+    static final String SUBJECT_KEY_IDENTIFIER_OID = "2.5.29.14";
+    static final String AUTHORITY_KEY_IDENTIFIER_OID = "2.5.29.35";
+
+    private static final int TAG_OCTET_STRING = 0x04;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_CONTEXT_0_CONSTRUCTED = 0xA0;
+    private static final int TAG_URI = 0x86; // GeneralName [6] uniformResourceIdentifier
+    private static final int TAG_KEY_IDENTIFIER = 0x80; // AuthorityKeyIdentifier [0] keyIdentifier
+
+    /**
+     * @return the http(s) and ldap URIs of the CRL distribution points (fullName only) of the certificate,
+     * never null
+     */
+    public static List<URI> getCrlDistributionPoints(final X509Certificate cert) {
+
+        final byte[] extension = cert.getExtensionValue(CRL_DISTRIBUTION_POINTS_OID);
+
+        if (extension == null) {
+            return Collections.emptyList();
+        }
+
+        final List<URI> points = new ArrayList<>(2);
+
+        try {
+            // CRLDistributionPoints ::= SEQUENCE SIZE (1..MAX) OF DistributionPoint
+            final Der crlDistributionPoints = Der.parse(Der.parse(extension).expect(TAG_OCTET_STRING).content())
+                    .expect(TAG_SEQUENCE);
+
+            for (final Der distributionPoint : crlDistributionPoints.expect(TAG_SEQUENCE).children()) {
+                for (final Der field : distributionPoint.children()) {
+                    // distributionPoint [0] DistributionPointName, which is a CHOICE and therefore explicitly tagged
+                    if (field.tag != TAG_CONTEXT_0_CONSTRUCTED) {
+                        continue;
+                    }
+
+                    for (final Der distributionPointName : field.children()) {
+                        // fullName [0] GeneralNames, nameRelativeToCRLIssuer is not supported
+                        if (distributionPointName.tag != TAG_CONTEXT_0_CONSTRUCTED) {
+                            continue;
+                        }
+
+                        for (final Der generalName : distributionPointName.children()) {
+                            if (generalName.tag == TAG_URI) {
+                                final String uri = new String(generalName.content(), StandardCharsets.US_ASCII);
+                                try {
+                                    points.add(new URI(uri));
+                                } catch (URISyntaxException e) {
+                                    log.debug("Ignore invalid CRL distribution point {} of {}", uri, cert.getSubjectX500Principal());
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to parse CRL distribution points of {} due to {}", cert.getSubjectX500Principal(), e.toString());
+        }
+
+        return points;
+    }
+
+    /**
+     * @return the key identifier of the SubjectKeyIdentifier extension or null if there is none
+     */
+    public static byte[] getSubjectKeyIdentifier(final X509Certificate cert) {
+
+        final byte[] extension = cert.getExtensionValue(SUBJECT_KEY_IDENTIFIER_OID);
+
+        if (extension == null) {
+            return null;
+        }
+
+        try {
+            // SubjectKeyIdentifier ::= KeyIdentifier ::= OCTET STRING
+            return Der.parse(Der.parse(extension).expect(TAG_OCTET_STRING).content()).expect(TAG_OCTET_STRING).content();
+        } catch (IOException e) {
+            log.warn("Unable to parse subject key identifier of {} due to {}", cert.getSubjectX500Principal(), e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * @return the key identifier of the AuthorityKeyIdentifier extension or null if there is none
+     */
+    public static byte[] getAuthorityKeyIdentifier(final X509Certificate cert) {
+
+        final byte[] extension = cert.getExtensionValue(AUTHORITY_KEY_IDENTIFIER_OID);
+
+        if (extension == null) {
+            return null;
+        }
+
+        try {
+            // AuthorityKeyIdentifier ::= SEQUENCE { keyIdentifier [0] KeyIdentifier OPTIONAL, ... }
+            final Der authorityKeyIdentifier = Der.parse(Der.parse(extension).expect(TAG_OCTET_STRING).content()).expect(TAG_SEQUENCE);
+
+            for (final Der field : authorityKeyIdentifier.children()) {
+                if (field.tag == TAG_KEY_IDENTIFIER) {
+                    return field.content();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to parse authority key identifier of {} due to {}", cert.getSubjectX500Principal(), e.toString());
+        }
+
+        return null;
+    }
+
+    private CertificateExtensions() {
+
+    }
+
+    static final class Der {
+
+        final int tag;
+        private final byte[] buf;
+        private final int offset;
+        private final int length;
+
+        private Der(final int tag, final byte[] buf, final int offset, final int length) {
+            this.tag = tag;
+            this.buf = buf;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        static Der parse(final byte[] buf) throws IOException {
+            return read(buf, 0, buf.length);
+        }
+
+        private static Der read(final byte[] buf, int pos, final int limit) throws IOException {
+
+            if (pos + 2 > limit) {
+                throw new IOException("Truncated DER value");
+            }
+
+            final int tag = buf[pos++] & 0xFF;
+
+            if ((tag & 0x1F) == 0x1F) {
+                throw new IOException("Multi byte DER tags are not supported");
+            }
+
+            int length = buf[pos++] & 0xFF;
+
+            if (length > 0x7F) {
+                final int numBytes = length & 0x7F;
+
+                if (numBytes == 0 || numBytes > 3) {
+                    throw new IOException("Unsupported DER length encoding");
+                }
+
+                if (pos + numBytes > limit) {
+                    throw new IOException("Truncated DER length");
+                }
+
+                length = 0;
+                for (int i = 0; i < numBytes; i++) {
+                    length = (length << 8) | (buf[pos++] & 0xFF);
+                }
+            }
+
+            if (pos + length > limit) {
+                throw new IOException("Truncated DER content");
+            }
+
+            return new Der(tag, buf, pos, length);
+        }
+
+        Der expect(final int expectedTag) throws IOException {
+            if (tag != expectedTag) {
+                throw new IOException("Expected DER tag " + expectedTag + " but was " + tag);
+            }
+            return this;
+        }
+
+        byte[] content() {
+            final byte[] content = new byte[length];
+            System.arraycopy(buf, offset, content, 0, length);
+            return content;
+        }
+
+        List<Der> children() throws IOException {
+            final List<Der> children = new ArrayList<>();
+            final int limit = offset + length;
+            int pos = offset;
+
+            while (pos < limit) {
+                final Der child = read(buf, pos, limit);
+                children.add(child);
+                pos = child.offset + child.length;
+            }
+
+            return children;
+        }
+    }
+}
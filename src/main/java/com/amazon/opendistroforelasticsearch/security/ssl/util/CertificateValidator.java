@@ -48,28 +48,41 @@ package com.amazon.opendistroforelasticsearch.security.ssl.util;
 //  ========================================================================
 //
 
+import java.net.URI;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.security.KeyStore;
-import java.security.Security;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.CRL;
 import java.security.cert.CertPathBuilder;
 import java.security.cert.CertPathBuilderResult;
 import java.security.cert.CertPathValidator;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertPathValidatorException.BasicReason;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateRevokedException;
 import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
 import java.security.cert.PKIXRevocationChecker;
 import java.security.cert.TrustAnchor;
+import java.security.cert.X509CRL;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.Enumeration;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Convenience class to handle validation of certificates, aliases and keystores
@@ -80,16 +93,44 @@ import java.util.Set;
  * 
  * IMPORTANT: at least one of the above mechanisms *MUST* be configured and
  * operational, otherwise certificate validation *WILL FAIL* unconditionally.
+ * 
+ * The revocation policy is carried entirely by the {@link PKIXRevocationChecker}
+ * and the CRLs of the {@link RevocationStore}, no JVM wide security or system
+ * properties are touched. Once configured an instance is thread safe and
+ * can (and should) be reused for all validations.
  */
 public class CertificateValidator
 {
     
+    private static final ThreadLocal<CertPathBuilder> CERT_PATH_BUILDER = new ThreadLocal<CertPathBuilder>() {
+        @Override
+        protected CertPathBuilder initialValue() {
+            try {
+                return CertPathBuilder.getInstance("PKIX");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+    
+    private static final ThreadLocal<CertPathValidator> CERT_PATH_VALIDATOR = new ThreadLocal<CertPathValidator>() {
+        @Override
+        protected CertPathValidator initialValue() {
+            try {
+                return CertPathValidator.getInstance("PKIX");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+    
     boolean isPreferCrl() {
         return preferCrl;
     }
 
     void setPreferCrl(boolean preferCrl) {
         this.preferCrl = preferCrl;
+        _template = null;
     }
 
     boolean isCheckOnlyEndEntities() {
@@ -98,6 +139,7 @@ public class CertificateValidator
 
     void setCheckOnlyEndEntities(boolean checkOnlyEndEntities) {
         this.checkOnlyEndEntities = checkOnlyEndEntities;
+        _template = null;
     }
 
     private KeyStore _trustStore;
@@ -112,11 +154,27 @@ public class CertificateValidator
     private boolean _enableOCSP = false;
     /** Location of OCSP Responder */
     private String _ocspResponderURL;
+    /** Source of the CRLs referenced by CRL Distribution Points */
+    private RevocationStore _revocationStore = RevocationStore.getDefault();
+    /** Download missing CRLs of CRL Distribution Points while validating, otherwise only cached CRLs are used */
+    private boolean _fetchCrlsOnMiss = true;
     
     private boolean preferCrl = false;
     private boolean checkOnlyEndEntities = true;
     private Date date = null; //current date
     
+    /** Successful signature verifications of the fast path */
+    private SignatureCache _signatureCache = SignatureCache.getDefault();
+    /** Verify presented chains directly against the trusted certificates before falling back to PKIX path building */
+    private boolean _fastPath = true;
+    /** Number of validations which were decided by the fast path */
+    private final AtomicLong _fastPathCount = new AtomicLong();
+    
+    /** Parameters shared by all validations, built lazily and reset if the configuration changes */
+    private volatile PKIXBuilderParameters _template;
+    /** Index of the trusted certificates for the fast path, built together with the template */
+    private volatile ChainVerifier _chainVerifier;
+    
     /**
      * creates an instance of the certificate validator 
      *
@@ -169,83 +227,229 @@ public class CertificateValidator
                 
             }
     
-            X509CertSelector certSelect = new X509CertSelector();
-            certSelect.setCertificate(certList.get(0));
-          
-            CertPathBuilder certPathBuilder = CertPathBuilder.getInstance("PKIX");
-            PKIXRevocationChecker revocationChecker = (PKIXRevocationChecker) certPathBuilder.getRevocationChecker();
-
-            Set<PKIXRevocationChecker.Option> opts = new HashSet<>();
+            // Clone the shared parameters, this also clones the (stateful) revocation checker
+            final PKIXBuilderParameters pbParams = (PKIXBuilderParameters) getTemplate().clone();
             
-            if(preferCrl) {
-                opts.add(PKIXRevocationChecker.Option.PREFER_CRLS);
-            }
+            // Verify the presented chain directly if possible
+            final ChainVerifier chainVerifier = _chainVerifier;
+            final ChainVerifier.VerifiedPath verifiedPath = chainVerifier == null ? null
+                    : chainVerifier.verify(certList, date == null ? new Date() : date);
             
-            //opts.add(PKIXRevocationChecker.Option.SOFT_FAIL);
+            // Get the CRLs of the CRL Distribution Points (CRLDP) of the certificates to check, only
+            // for a chain which leads to a trusted certificate so that presented chains can not make us
+            // contact arbitrary distribution points
+            Collection<X509CRL> dpCrls = Collections.<X509CRL>emptyList();
+            List<X509Certificate> builtPath = null;
             
-            //opts.add(PKIXRevocationChecker.Option.NO_FALLBACK);
+            if (_enableCRLDP)
+            {
+                final List<X509Certificate> trustedPath;
+                
+                if (verifiedPath != null)
+                {
+                    trustedPath = verifiedPath.certs;
+                }
+                else
+                {
+                    trustedPath = builtPath = buildPathWithoutRevocation(certList, pbParams);
+                }
+                
+                dpCrls = _revocationStore.getCrls(getCrlDistributionPoints(trustedPath), date, _fetchCrlsOnMiss);
+            }
             
-            if(checkOnlyEndEntities) {
-                 opts.add(PKIXRevocationChecker.Option.ONLY_END_ENTITY);
+            if (!dpCrls.isEmpty())
+            {
+                pbParams.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(dpCrls)));
             }
             
-            revocationChecker.setOptions(opts);
-
-            // Configure certification path builder parameters
-            PKIXBuilderParameters pbParams = null;
+            if (verifiedPath != null && validateFast(chainVerifier, verifiedPath, dpCrls, pbParams))
+            {
+                return;
+            }
             
-            if(_trustStore != null) {
-                pbParams = new PKIXBuilderParameters(_trustStore, certSelect);
-            } else {
-                Set<TrustAnchor> trustAnchors = new HashSet<TrustAnchor>();
-                for (int i = 0; i < _trustedCert.length; i++) {
-                    X509Certificate certificate = _trustedCert[i];
-                    TrustAnchor trustAnchor = new TrustAnchor(certificate, null);
-                    trustAnchors.add(trustAnchor);
-                }
-
-                pbParams = new PKIXBuilderParameters(trustAnchors, certSelect);
+            if (builtPath != null)
+            {
+                // The path is already known, only revocation is left to check
+                CERT_PATH_VALIDATOR.get().validate(CertificateFactory.getInstance("X.509").generateCertPath(builtPath), pbParams);
+                return;
             }
             
-            pbParams.addCertPathChecker(revocationChecker);
+            X509CertSelector certSelect = new X509CertSelector();
+            certSelect.setCertificate(certList.get(0));
             
-            pbParams.setDate(date);
+            pbParams.setTargetCertConstraints(certSelect);
             
             pbParams.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(certList)));
-            
-            // Set maximum certification path length
-            pbParams.setMaxPathLength(_maxCertPathLength);
     
-            // Enable revocation checking
-            pbParams.setRevocationEnabled(true);
+            // Build certification path
+            CertPathBuilderResult buildResult = CERT_PATH_BUILDER.get().build(pbParams);               
+            
+            // Validate certification path
+            CERT_PATH_VALIDATOR.get().validate(buildResult.getCertPath(),pbParams);
+        }
+        catch (GeneralSecurityException gse)
+        {
+            throw new CertificateException("Unable to validate certificate: " + gse.getMessage(), gse);
+        }
+    }
     
-            // Set static Certificate Revocation List
-            if (_crls != null && !_crls.isEmpty())
+    /**
+     * @return true if the chain was validated without building a path, false if full PKIX validation is needed
+     */
+    private boolean validateFast(ChainVerifier chainVerifier, ChainVerifier.VerifiedPath path, Collection<X509CRL> dpCrls, PKIXBuilderParameters pbParams) throws GeneralSecurityException
+    {
+        final Date validationDate = date == null ? new Date() : date;
+        
+        if (_enableOCSP)
+        {
+            _fastPathCount.incrementAndGet();
+            // Revocation checking (OCSP with CRL fallback) is left to PKIX, but there is no need to search for a path
+            CERT_PATH_VALIDATOR.get().validate(CertificateFactory.getInstance("X.509").generateCertPath(path.certs), pbParams);
+            return true;
+        }
+        
+        final List<CRL> crls = new ArrayList<CRL>(dpCrls);
+        
+        if (_crls != null)
+        {
+            crls.addAll(_crls);
+        }
+        
+        try
+        {
+            if (!chainVerifier.checkRevocation(path, crls, validationDate, checkOnlyEndEntities))
             {
-                pbParams.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(_crls)));
+                return false;
             }
+        }
+        catch (CertificateRevokedException e)
+        {
+            _fastPathCount.incrementAndGet();
+            throw new CertPathValidatorException("Certificate has been revoked", e, null, -1, BasicReason.REVOKED);
+        }
+        
+        _fastPathCount.incrementAndGet();
+        return true;
+    }
     
-            // Enable On-Line Certificate Status Protocol (OCSP) support
-            if (_enableOCSP)
-            {
-                Security.setProperty("ocsp.enable","true");
-            }
-            // Enable Certificate Revocation List Distribution Points (CRLDP) support
-            if (_enableCRLDP)
+    /**
+     * @return the certification path from the presented chain to a trusted certificate, without revocation checking
+     */
+    @SuppressWarnings("unchecked")
+    private List<X509Certificate> buildPathWithoutRevocation(List<X509Certificate> certList, PKIXBuilderParameters pbParams) throws GeneralSecurityException
+    {
+        final PKIXBuilderParameters params = (PKIXBuilderParameters) pbParams.clone();
+        
+        // The revocation checker is used regardless of the revocation enabled flag, so it has to go as well
+        params.setRevocationEnabled(false);
+        params.setCertPathCheckers(null);
+        
+        X509CertSelector certSelect = new X509CertSelector();
+        certSelect.setCertificate(certList.get(0));
+        params.setTargetCertConstraints(certSelect);
+        params.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(certList)));
+        
+        return (List<X509Certificate>) CERT_PATH_BUILDER.get().build(params).getCertPath().getCertificates();
+    }
+    
+    private PKIXBuilderParameters getTemplate() throws GeneralSecurityException
+    {
+        PKIXBuilderParameters template = _template;
+        
+        if (template == null)
+        {
+            synchronized (this)
             {
-                System.setProperty("com.sun.security.enableCRLDP","true");
+                template = _template;
+                
+                if (template == null)
+                {
+                    _chainVerifier = _fastPath ? new ChainVerifier(getTrustedCertificates(), _maxCertPathLength, _signatureCache) : null;
+                    _template = template = buildTemplate();
+                }
             }
+        }
+        
+        return template;
+    }
     
-            // Build certification path
-            CertPathBuilderResult buildResult = CertPathBuilder.getInstance("PKIX").build(pbParams);               
-            
-            // Validate certification path
-            CertPathValidator.getInstance("PKIX").validate(buildResult.getCertPath(),pbParams);
+    private PKIXBuilderParameters buildTemplate() throws GeneralSecurityException
+    {
+        // Configure certification path builder parameters
+        PKIXBuilderParameters pbParams = null;
+        
+        if(_trustStore != null) {
+            pbParams = new PKIXBuilderParameters(_trustStore, null);
+        } else {
+            Set<TrustAnchor> trustAnchors = new HashSet<TrustAnchor>();
+            for (int i = 0; i < _trustedCert.length; i++) {
+                X509Certificate certificate = _trustedCert[i];
+                TrustAnchor trustAnchor = new TrustAnchor(certificate, null);
+                trustAnchors.add(trustAnchor);
+            }
+
+            pbParams = new PKIXBuilderParameters(trustAnchors, null);
         }
-        catch (GeneralSecurityException gse)
+        
+        PKIXRevocationChecker revocationChecker = (PKIXRevocationChecker) CERT_PATH_BUILDER.get().getRevocationChecker();
+
+        Set<PKIXRevocationChecker.Option> opts = EnumSet.noneOf(PKIXRevocationChecker.Option.class);
+        
+        // Without On-Line Certificate Status Protocol (OCSP) support only CRLs are used
+        if(preferCrl || !_enableOCSP) {
+            opts.add(PKIXRevocationChecker.Option.PREFER_CRLS);
+        }
+        
+        if(!_enableOCSP) {
+            opts.add(PKIXRevocationChecker.Option.NO_FALLBACK);
+        }
+        
+        //opts.add(PKIXRevocationChecker.Option.SOFT_FAIL);
+        
+        if(checkOnlyEndEntities) {
+             opts.add(PKIXRevocationChecker.Option.ONLY_END_ENTITY);
+        }
+        
+        revocationChecker.setOptions(opts);
+        
+        if(_enableOCSP && _ocspResponderURL != null) {
+            revocationChecker.setOcspResponder(URI.create(_ocspResponderURL));
+        }
+        
+        pbParams.addCertPathChecker(revocationChecker);
+        
+        pbParams.setDate(date);
+        
+        // Set maximum certification path length
+        pbParams.setMaxPathLength(_maxCertPathLength);
+
+        // Enable revocation checking
+        pbParams.setRevocationEnabled(true);
+
+        // Set static Certificate Revocation List
+        if (_crls != null && !_crls.isEmpty())
         {
-            throw new CertificateException("Unable to validate certificate: " + gse.getMessage(), gse);
+            pbParams.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(_crls)));
         }
+        
+        return pbParams;
+    }
+    
+    private Collection<URI> getCrlDistributionPoints(List<X509Certificate> certList)
+    {
+        final Set<URI> distributionPoints = new LinkedHashSet<URI>();
+        
+        for (X509Certificate cert : certList)
+        {
+            distributionPoints.addAll(CertificateExtensions.getCrlDistributionPoints(cert));
+            
+            if (checkOnlyEndEntities)
+            {
+                break;
+            }
+        }
+        
+        return distributionPoints;
     }
 
     public Collection<? extends CRL> getCrls()
@@ -271,6 +475,7 @@ public class CertificateValidator
     public void setMaxCertPathLength(int maxCertPathLength)
     {
         _maxCertPathLength = maxCertPathLength;
+        _template = null;
     }
     
     /* ------------------------------------------------------------ */
@@ -289,6 +494,7 @@ public class CertificateValidator
     public void setEnableCRLDP(boolean enableCRLDP)
     {
         _enableCRLDP = enableCRLDP;
+        _template = null;
     }
 
     /* ------------------------------------------------------------ */
@@ -307,6 +513,7 @@ public class CertificateValidator
     public void setEnableOCSP(boolean enableOCSP)
     {
         _enableOCSP = enableOCSP;
+        _template = null;
     }
 
     /* ------------------------------------------------------------ */
@@ -325,6 +532,7 @@ public class CertificateValidator
     public void setOcspResponderURL(String ocspResponderURL)
     {
         _ocspResponderURL = ocspResponderURL;
+        _template = null;
     }
 
     public Date getDate() {
@@ -333,5 +541,104 @@ public class CertificateValidator
 
     public void setDate(Date date) {
         this.date = date==null?null:(Date) date.clone();
+        _template = null;
+    }
+    
+    public RevocationStore getRevocationStore()
+    {
+        return _revocationStore;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Set the store which provides the CRLs of CRL Distribution Points
+     * @param revocationStore the store to use
+     */
+    public void setRevocationStore(RevocationStore revocationStore)
+    {
+        _revocationStore = revocationStore == null ? RevocationStore.getDefault() : revocationStore;
+    }
+    
+    public boolean isFastPath()
+    {
+        return _fastPath;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Enables direct verification of the presented chain against the trusted certificates,
+     * chains which can not be handled that way are still validated with full PKIX path building
+     * @param fastPath true - turn on, false - turn off
+     */
+    public void setFastPath(boolean fastPath)
+    {
+        _fastPath = fastPath;
+        _template = null;
+    }
+    
+    /**
+     * @return number of validations which were decided without PKIX path building
+     */
+    public long getFastPathCount()
+    {
+        return _fastPathCount.get();
+    }
+    
+    public SignatureCache getSignatureCache()
+    {
+        return _signatureCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Set the cache used to skip repeated signature verifications of the fast path
+     * @param signatureCache the cache to use
+     */
+    public void setSignatureCache(SignatureCache signatureCache)
+    {
+        _signatureCache = signatureCache == null ? SignatureCache.getDefault() : signatureCache;
+        _template = null;
+    }
+    
+    public boolean isFetchCrlsOnMiss()
+    {
+        return _fetchCrlsOnMiss;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Controls whether missing CRLs of CRL Distribution Points are downloaded during validation
+     * @param fetchCrlsOnMiss false - use only CRLs which are already in the revocation store
+     */
+    public void setFetchCrlsOnMiss(boolean fetchCrlsOnMiss)
+    {
+        _fetchCrlsOnMiss = fetchCrlsOnMiss;
+    }
+    
+    /* ------------------------------------------------------------ */
+    /** 
+     * @return the trusted certificates, either from the truststore or as passed to the constructor
+     */
+    public Collection<X509Certificate> getTrustedCertificates() throws KeyStoreException
+    {
+        final List<X509Certificate> trustedCerts = new ArrayList<X509Certificate>();
+        
+        if (_trustStore != null)
+        {
+            for (Enumeration<String> aliases = _trustStore.aliases(); aliases.hasMoreElements();)
+            {
+                final Certificate cert = _trustStore.getCertificate(aliases.nextElement());
+                
+                if (cert instanceof X509Certificate)
+                {
+                    trustedCerts.add((X509Certificate) cert);
+                }
+            }
+        }
+        else
+        {
+            for (X509Certificate cert : _trustedCert)
+            {
+                trustedCerts.add(cert);
+            }
+        }
+        
+        return trustedCerts;
     }
 }
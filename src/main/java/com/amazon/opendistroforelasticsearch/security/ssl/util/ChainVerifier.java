@@ -0,0 +1,349 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.security.cert.CRL;
+import java.security.cert.CRLReason;
+import java.security.cert.CertificateRevokedException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+/**
+ * Direct verification of a presented certificate chain against preindexed trust anchors.
+ * <p>
+ * This covers the common case (leaf, optional intermediates, issuer is a trusted certificate) without
+ * the candidate path search of the PKIX {@link java.security.cert.CertPathBuilder}. Whenever a chain
+ * uses something which is not handled here (unknown critical extensions, name constraints, weak or
+ * unknown algorithms, chains not in issuer order, ...) or fails to verify, null or false is returned
+ * and the caller has to fall back to full PKIX validation, which also produces the canonical error.
+ */
+final class ChainVerifier {
+
+    private static final String BASIC_CONSTRAINTS_OID = "2.5.29.19";
+    private static final String KEY_USAGE_OID = "2.5.29.15";
+    private static final String EXTENDED_KEY_USAGE_OID = "2.5.29.37";
+    private static final String SUBJECT_ALT_NAME_OID = "2.5.29.17";
+    private static final String NAME_CONSTRAINTS_OID = "2.5.29.30";
+    private static final String ISSUING_DISTRIBUTION_POINT_OID = "2.5.29.28";
+    private static final String DELTA_CRL_INDICATOR_OID = "2.5.29.27";
+
+    private static final Set<String> SUPPORTED_CRITICAL_EXTENSIONS = new HashSet<>(
+            Arrays.asList(BASIC_CONSTRAINTS_OID, KEY_USAGE_OID, EXTENDED_KEY_USAGE_OID, SUBJECT_ALT_NAME_OID));
+
+    //everything else (SHA1, MD5, DSA, ...) is left to PKIX which applies jdk.certpath.disabledAlgorithms
+    private static final Set<String> STRONG_SIGNATURE_ALGORITHMS = new HashSet<>(Arrays.asList(
+            "SHA256WITHRSA", "SHA384WITHRSA", "SHA512WITHRSA",
+            "SHA256WITHECDSA", "SHA384WITHECDSA", "SHA512WITHECDSA",
+            "RSASSA-PSS", "ED25519", "ED448"));
+
+    private static final int MIN_RSA_KEY_SIZE = 2048;
+    private static final int MIN_EC_KEY_SIZE = 256;
+
+    private static final int KEY_USAGE_KEY_CERT_SIGN = 5;
+    private static final int KEY_USAGE_CRL_SIGN = 6;
+
+    private final Map<X500Principal, List<X509Certificate>> anchorsBySubject = new HashMap<>();
+    private final Map<ByteBuffer, List<X509Certificate>> anchorsByKeyId = new HashMap<>();
+    private final int maxPathLength;
+    private final SignatureCache signatureCache;
+
+    ChainVerifier(final Collection<X509Certificate> trustedCerts, final int maxPathLength, final SignatureCache signatureCache) {
+        this.maxPathLength = maxPathLength;
+        this.signatureCache = signatureCache;
+
+        for (final X509Certificate trustedCert : trustedCerts) {
+            anchorsBySubject.computeIfAbsent(trustedCert.getSubjectX500Principal(), k -> new ArrayList<>(1)).add(trustedCert);
+
+            final byte[] keyId = CertificateExtensions.getSubjectKeyIdentifier(trustedCert);
+            if (keyId != null) {
+                anchorsByKeyId.computeIfAbsent(ByteBuffer.wrap(keyId), k -> new ArrayList<>(1)).add(trustedCert);
+            }
+        }
+    }
+
+    /**
+     * Verifies signatures, validity and constraints along the presented chain (leaf first) until
+     * a certificate issued by a trust anchor is reached.
+     *
+     * @return the verified path or null if the chain cannot be verified here
+     */
+    VerifiedPath verify(final List<X509Certificate> chain, final Date date) {
+
+        final List<X509Certificate> path = new ArrayList<>(chain.size());
+        //number of non self-issued intermediates below the current certificate
+        int intermediates = 0;
+
+        for (int i = 0; i < chain.size(); i++) {
+            final X509Certificate cert = chain.get(i);
+
+            if (!isSupported(cert) || !isValid(cert, date)) {
+                return null;
+            }
+
+            if (i > 0) {
+                //cert is the issuer of the previous one, so it must be a CA allowed to sign certificates
+                final X509Certificate subject = chain.get(i - 1);
+                final boolean selfIssued = subject.getSubjectX500Principal().equals(subject.getIssuerX500Principal());
+
+                if (i > 1 && !selfIssued) {
+                    intermediates++;
+                }
+
+                if (!isCa(cert, intermediates) || !verifySignature(subject, cert)) {
+                    return null;
+                }
+            }
+
+            path.add(cert);
+
+            final X509Certificate anchor = findAnchor(cert);
+
+            if (anchor != null) {
+                final boolean selfIssued = cert.getSubjectX500Principal().equals(cert.getIssuerX500Principal());
+                final int pathLength = intermediates + (i > 0 && !selfIssued ? 1 : 0);
+                if (maxPathLength >= 0 && pathLength > maxPathLength) {
+                    return null;
+                }
+                return new VerifiedPath(path, anchor);
+            }
+
+            if (i + 1 < chain.size() && !chain.get(i + 1).getSubjectX500Principal().equals(cert.getIssuerX500Principal())) {
+                //not in issuer order
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks the revocation status of the certificates of the path with the given CRLs only.
+     *
+     * @return true if a valid CRL was found for every certificate to check, false if PKIX has to decide
+     * @throws CertificateRevokedException if a certificate is revoked
+     */
+    boolean checkRevocation(final VerifiedPath path, final Collection<? extends CRL> crls, final Date date, final boolean onlyEndEntity)
+            throws CertificateRevokedException {
+
+        final int toCheck = onlyEndEntity ? 1 : path.certs.size();
+
+        for (int i = 0; i < toCheck; i++) {
+            final X509Certificate cert = path.certs.get(i);
+            final X509Certificate issuer = path.issuerOf(i);
+            boolean decided = false;
+
+            for (final CRL crl : crls) {
+                if (!(crl instanceof X509CRL)) {
+                    continue;
+                }
+
+                final X509CRL x509Crl = (X509CRL) crl;
+
+                if (!x509Crl.getIssuerX500Principal().equals(cert.getIssuerX500Principal())) {
+                    continue;
+                }
+
+                //a CRL of this issuer we cannot interpret may revoke the certificate, so PKIX has to decide
+                if (!isSupported(x509Crl)) {
+                    return false;
+                }
+
+                if (!isUsable(x509Crl, issuer, date)) {
+                    continue;
+                }
+
+                final X509CRLEntry entry = x509Crl.getRevokedCertificate(cert);
+
+                if (entry != null) {
+                    final CRLReason reason = entry.getRevocationReason() == null ? CRLReason.UNSPECIFIED : entry.getRevocationReason();
+
+                    //removals from delta CRLs, future revocation dates and unknown entry extensions are left to PKIX
+                    if (entry.hasUnsupportedCriticalExtension() || reason == CRLReason.REMOVE_FROM_CRL
+                            || !entry.getRevocationDate().before(date)) {
+                        return false;
+                    }
+
+                    throw new CertificateRevokedException(entry.getRevocationDate(), reason, x509Crl.getIssuerX500Principal(),
+                            Collections.emptyMap());
+                }
+
+                decided = true;
+            }
+
+            if (!decided) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private X509Certificate findAnchor(final X509Certificate cert) {
+
+        List<X509Certificate> candidates = null;
+        final byte[] authorityKeyId = CertificateExtensions.getAuthorityKeyIdentifier(cert);
+
+        if (authorityKeyId != null) {
+            candidates = anchorsByKeyId.get(ByteBuffer.wrap(authorityKeyId));
+        }
+
+        if (candidates == null) {
+            candidates = anchorsBySubject.get(cert.getIssuerX500Principal());
+        }
+
+        if (candidates == null) {
+            return null;
+        }
+
+        for (final X509Certificate candidate : candidates) {
+            if (candidate.getSubjectX500Principal().equals(cert.getIssuerX500Principal()) && verifySignature(cert, candidate)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean isSupported(final X509Certificate cert) {
+
+        final Set<String> criticalExtensions = cert.getCriticalExtensionOIDs();
+
+        if (criticalExtensions != null && !SUPPORTED_CRITICAL_EXTENSIONS.containsAll(criticalExtensions)) {
+            return false;
+        }
+
+        return cert.getExtensionValue(NAME_CONSTRAINTS_OID) == null
+                && STRONG_SIGNATURE_ALGORITHMS.contains(cert.getSigAlgName().toUpperCase(Locale.ROOT));
+    }
+
+    private static boolean isValid(final X509Certificate cert, final Date date) {
+        try {
+            cert.checkValidity(date);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isCa(final X509Certificate cert, final int intermediatesBelow) {
+
+        final int pathLenConstraint = cert.getBasicConstraints();
+
+        if (pathLenConstraint < 0 || pathLenConstraint < intermediatesBelow) {
+            return false;
+        }
+
+        final boolean[] keyUsage = cert.getKeyUsage();
+        return keyUsage == null || (keyUsage.length > KEY_USAGE_KEY_CERT_SIGN && keyUsage[KEY_USAGE_KEY_CERT_SIGN]);
+    }
+
+    private static boolean isSupported(final X509CRL crl) {
+
+        //issuing distribution point, delta CRL indicator, ... are left to PKIX
+        final Set<String> criticalExtensions = crl.getCriticalExtensionOIDs();
+        if (criticalExtensions != null && !criticalExtensions.isEmpty()) {
+            return false;
+        }
+
+        return crl.getExtensionValue(ISSUING_DISTRIBUTION_POINT_OID) == null && crl.getExtensionValue(DELTA_CRL_INDICATOR_OID) == null;
+    }
+
+    private boolean isUsable(final X509CRL crl, final X509Certificate issuer, final Date date) {
+
+        if (crl.getThisUpdate().after(date) || (crl.getNextUpdate() != null && crl.getNextUpdate().before(date))) {
+            return false;
+        }
+
+        final boolean[] keyUsage = issuer.getKeyUsage();
+        if (keyUsage != null && (keyUsage.length <= KEY_USAGE_CRL_SIGN || !keyUsage[KEY_USAGE_CRL_SIGN])) {
+            return false;
+        }
+
+        if (!isStrongKey(issuer.getPublicKey())) {
+            return false;
+        }
+
+        try {
+            signatureCache.verify(crl, issuer.getPublicKey());
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean verifySignature(final X509Certificate cert, final X509Certificate issuer) {
+
+        final PublicKey issuerKey = issuer.getPublicKey();
+
+        if (!isStrongKey(issuerKey)) {
+            return false;
+        }
+
+        try {
+            signatureCache.verify(cert, issuerKey);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static boolean isStrongKey(final PublicKey key) {
+
+        if (key instanceof RSAPublicKey) {
+            return ((RSAPublicKey) key).getModulus().bitLength() >= MIN_RSA_KEY_SIZE;
+        }
+
+        if (key instanceof ECPublicKey) {
+            return ((ECPublicKey) key).getParams().getCurve().getField().getFieldSize() >= MIN_EC_KEY_SIZE;
+        }
+
+        return "Ed25519".equalsIgnoreCase(key.getAlgorithm()) || "Ed448".equalsIgnoreCase(key.getAlgorithm())
+                || "EdDSA".equalsIgnoreCase(key.getAlgorithm());
+    }
+
+    static final class VerifiedPath {
+        /** leaf first, without the trust anchor */
+        final List<X509Certificate> certs;
+        final X509Certificate anchor;
+
+        private VerifiedPath(final List<X509Certificate> certs, final X509Certificate anchor) {
+            this.certs = certs;
+            this.anchor = anchor;
+        }
+
+        X509Certificate issuerOf(final int index) {
+            return index + 1 < certs.size() ? certs.get(index + 1) : anchor;
+        }
+    }
+}
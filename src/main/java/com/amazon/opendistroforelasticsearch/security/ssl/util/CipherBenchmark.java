@@ -0,0 +1,309 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.handler.ssl.ClientAuth;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.util.ReferenceCountUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Startup micro-benchmark of the AEAD cipher families with a given provider. For every family a TLS 1.2
+ * connection between two in-memory engines is established with the node's own key and full size records
+ * are encrypted on one side and decrypted on the other.
+ * <p>
+ * Which family is faster depends on the hardware (AES instructions) and on the provider (OpenSSL or
+ * the JDK and its version), so the result is used to put the faster family first in the cipher list, but
+ * only if every family could be measured and the faster one is ahead by a clear margin.
+ */
+public final class CipherBenchmark {
+
+    public enum Family {
+        AES_GCM("_GCM_", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256"),
+        CHACHA20_POLY1305("_CHACHA20_POLY1305_", "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+                "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256");
+
+        private final String marker;
+        private final List<String> benchmarkSuites;
+
+        private Family(final String marker, final String... benchmarkSuites) {
+            this.marker = marker;
+            this.benchmarkSuites = Collections.unmodifiableList(Arrays.asList(benchmarkSuites));
+        }
+
+        public boolean matches(final String cipherSuite) {
+            return cipherSuite.contains(marker);
+        }
+    }
+
+    private static final Logger log = LogManager.getLogger(CipherBenchmark.class);
+    private static final String[] PROTOCOLS = { "TLSv1.2" };
+    private static final int RECORD_SIZE = 16 * 1024;
+    private static final long WARMUP_BYTES = 4L * 1024 * 1024;
+    private static final long MEASURED_BYTES = 8L * 1024 * 1024;
+    private static final int ROUNDS = 3;
+    private static final int MAX_HANDSHAKE_STEPS = 100;
+    /** Minimum advantage in percent of the faster family, smaller differences are within the measurement noise */
+    private static final int MIN_ADVANTAGE_PERCENT = 10;
+
+    private CipherBenchmark() {
+    }
+
+    /**
+     * @param provider the provider to build the benchmark contexts with
+     * @param serverContextBuilder creates a server context builder with the key material to use
+     */
+    public static Result run(final SslProvider provider, final Supplier<SslContextBuilder> serverContextBuilder) {
+
+        final Map<Family, Long> throughput = new EnumMap<>(Family.class);
+
+        for (final Family family : Family.values()) {
+            try {
+                throughput.put(family, measure(provider, serverContextBuilder.get(), family));
+            } catch (final Exception e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Unable to benchmark {} with {} due to {}", family, provider, e.toString());
+                }
+            }
+        }
+
+        return new Result(throughput);
+    }
+
+    /**
+     * @return the cipher suites with the suites of the preferred family first, otherwise in the original order
+     */
+    public static List<String> reorder(final List<String> cipherSuites, final Family preferred) {
+        final List<String> reordered = new ArrayList<>(cipherSuites.size());
+        for (final String cipherSuite : cipherSuites) {
+            if (preferred.matches(cipherSuite)) {
+                reordered.add(cipherSuite);
+            }
+        }
+        for (final String cipherSuite : cipherSuites) {
+            if (!preferred.matches(cipherSuite)) {
+                reordered.add(cipherSuite);
+            }
+        }
+        return reordered;
+    }
+
+    /**
+     * @return the throughput in MB/s (encryption and decryption)
+     */
+    private static long measure(final SslProvider provider, final SslContextBuilder serverContextBuilder, final Family family)
+            throws SSLException {
+
+        SslContext serverContext = null;
+        SslContext clientContext = null;
+        SSLEngine server = null;
+        SSLEngine client = null;
+
+        try {
+            serverContext = serverContextBuilder.ciphers(family.benchmarkSuites).clientAuth(ClientAuth.NONE)
+                    .sessionCacheSize(0).sslProvider(provider).build();
+            clientContext = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE)
+                    .ciphers(family.benchmarkSuites).sslProvider(provider).build();
+
+            server = serverContext.newEngine(UnpooledByteBufAllocator.DEFAULT);
+            client = clientContext.newEngine(UnpooledByteBufAllocator.DEFAULT);
+            server.setEnabledProtocols(PROTOCOLS);
+            client.setEnabledProtocols(PROTOCOLS);
+
+            handshake(client, server);
+
+            if (!family.matches(client.getSession().getCipherSuite())) {
+                throw new SSLException("Negotiated unexpected cipher suite " + client.getSession().getCipherSuite());
+            }
+
+            final ByteBuffer plain = ByteBuffer.allocate(RECORD_SIZE);
+            final ByteBuffer packet = ByteBuffer.allocate(client.getSession().getPacketBufferSize());
+            final ByteBuffer decrypted = ByteBuffer.allocate(server.getSession().getApplicationBufferSize());
+
+            transfer(client, server, plain, packet, decrypted, WARMUP_BYTES);
+
+            long bestNanos = Long.MAX_VALUE;
+            for (int i = 0; i < ROUNDS; i++) {
+                final long start = System.nanoTime();
+                transfer(client, server, plain, packet, decrypted, MEASURED_BYTES);
+                bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+            }
+
+            return MEASURED_BYTES * 1000000L / Math.max(1, bestNanos / 1000L) / (1024 * 1024);
+        } finally {
+            ReferenceCountUtil.release(client);
+            ReferenceCountUtil.release(server);
+            ReferenceCountUtil.release(clientContext);
+            ReferenceCountUtil.release(serverContext);
+        }
+    }
+
+    private static void handshake(final SSLEngine client, final SSLEngine server) throws SSLException {
+
+        final ByteBuffer empty = ByteBuffer.allocate(0);
+        final ByteBuffer clientToServer = ByteBuffer.allocate(client.getSession().getPacketBufferSize() * 2);
+        final ByteBuffer serverToClient = ByteBuffer.allocate(server.getSession().getPacketBufferSize() * 2);
+        final ByteBuffer clientApp = ByteBuffer.allocate(client.getSession().getApplicationBufferSize());
+        final ByteBuffer serverApp = ByteBuffer.allocate(server.getSession().getApplicationBufferSize());
+
+        client.beginHandshake();
+        server.beginHandshake();
+
+        for (int i = 0; i < MAX_HANDSHAKE_STEPS; i++) {
+
+            if (isDone(client) && isDone(server)) {
+                return;
+            }
+
+            client.wrap(empty, clientToServer);
+            server.wrap(empty, serverToClient);
+            runDelegatedTasks(client);
+            runDelegatedTasks(server);
+
+            clientToServer.flip();
+            serverToClient.flip();
+            client.unwrap(serverToClient, clientApp);
+            server.unwrap(clientToServer, serverApp);
+            clientToServer.compact();
+            serverToClient.compact();
+            runDelegatedTasks(client);
+            runDelegatedTasks(server);
+        }
+
+        throw new SSLException("Benchmark handshake did not complete");
+    }
+
+    private static boolean isDone(final SSLEngine engine) {
+        final HandshakeStatus status = engine.getHandshakeStatus();
+        return status == HandshakeStatus.NOT_HANDSHAKING || status == HandshakeStatus.FINISHED;
+    }
+
+    private static void runDelegatedTasks(final SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+
+    private static void transfer(final SSLEngine client, final SSLEngine server, final ByteBuffer plain, final ByteBuffer packet,
+            final ByteBuffer decrypted, final long bytes) throws SSLException {
+
+        long remaining = bytes;
+
+        while (remaining > 0) {
+            plain.clear();
+            packet.clear();
+
+            final SSLEngineResult wrapped = client.wrap(plain, packet);
+            if (wrapped.getStatus() != SSLEngineResult.Status.OK || wrapped.bytesConsumed() == 0) {
+                throw new SSLException("Unexpected wrap result " + wrapped);
+            }
+            remaining -= wrapped.bytesConsumed();
+
+            packet.flip();
+            while (packet.hasRemaining()) {
+                decrypted.clear();
+                final SSLEngineResult unwrapped = server.unwrap(packet, decrypted);
+                if (unwrapped.getStatus() != SSLEngineResult.Status.OK) {
+                    throw new SSLException("Unexpected unwrap result " + unwrapped);
+                }
+            }
+        }
+    }
+
+    public static final class Result {
+        private final Map<Family, Long> throughput;
+        private final Family preferred;
+
+        /**
+         * @param throughput the measured throughput in MB/s per family
+         */
+        public Result(final Map<Family, Long> throughput) {
+            final Map<Family, Long> copy = new EnumMap<>(Family.class);
+            copy.putAll(throughput);
+            this.throughput = Collections.unmodifiableMap(copy);
+            this.preferred = clearlyFastest(copy);
+        }
+
+        private static Family clearlyFastest(final Map<Family, Long> throughput) {
+
+            //without a measurement of every family the configured order is kept
+            if (throughput.size() < Family.values().length) {
+                return null;
+            }
+
+            Family fastest = null;
+            long secondBest = 0;
+            for (final Map.Entry<Family, Long> entry : throughput.entrySet()) {
+                if (fastest == null || entry.getValue() > throughput.get(fastest)) {
+                    if (fastest != null) {
+                        secondBest = throughput.get(fastest);
+                    }
+                    fastest = entry.getKey();
+                } else {
+                    secondBest = Math.max(secondBest, entry.getValue());
+                }
+            }
+
+            if (throughput.get(fastest) * 100 < secondBest * (100 + MIN_ADVANTAGE_PERCENT)) {
+                return null;
+            }
+
+            return fastest;
+        }
+
+        /**
+         * @return the measured throughput in MB/s per family, families not supported by the provider are missing
+         */
+        public Map<Family, Long> getThroughput() {
+            return throughput;
+        }
+
+        /**
+         * @return the fastest family or null if not every family could be measured or none is
+         * clearly faster than the others, then the configured cipher order is kept
+         */
+        public Family getPreferred() {
+            return preferred;
+        }
+
+        @Override
+        public String toString() {
+            return "preferred " + preferred + " " + throughput + " MB/s";
+        }
+    }
+}
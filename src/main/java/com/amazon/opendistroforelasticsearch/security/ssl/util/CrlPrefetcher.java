@@ -0,0 +1,128 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.security.AccessController;
+import java.security.PrivilegedExceptionAction;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.SpecialPermission;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Keeps the CRLs of CRL distribution points in a {@link RevocationStore} up to date in the background,
+ * so that certificate validation (with {@link CertificateValidator#setFetchCrlsOnMiss(boolean)} set to false)
+ * never has to wait for network I/O.
+ * <p>
+ * Distribution points are taken from the trusted certificates and from all certificates the
+ * revocation store was asked about. CRLs missing at validation time are fetched as soon as possible.
+ */
+public class CrlPrefetcher implements Closeable {
+
+    private static final Logger log = LogManager.getLogger(CrlPrefetcher.class);
+    private static final long MISS_RETRY_MILLIS = 30 * 1000;
+
+    private final RevocationStore store;
+    private final Set<URI> trustedDistributionPoints = new LinkedHashSet<>();
+    private final ThreadPool threadPool;
+    private final TimeValue interval;
+    //distribution point -> start of the last fetch, used to de-duplicate fetches triggered by misses
+    private final ConcurrentMap<URI, Long> lastFetches = new ConcurrentHashMap<>();
+    private volatile Cancellable scheduled;
+
+    public CrlPrefetcher(final RevocationStore store, final Collection<X509Certificate> trustedCerts, final ThreadPool threadPool, final TimeValue interval) {
+        this.store = store;
+        this.threadPool = threadPool;
+        this.interval = interval;
+        
+        for (final X509Certificate trustedCert : trustedCerts) {
+            trustedDistributionPoints.addAll(CertificateExtensions.getCrlDistributionPoints(trustedCert));
+        }
+    }
+
+    public void start() {
+        store.setMissListener(this::onMiss);
+        threadPool.generic().execute(this::refresh);
+        scheduled = threadPool.scheduleWithFixedDelay(this::refresh, interval, ThreadPool.Names.GENERIC);
+        
+        if (log.isDebugEnabled()) {
+            log.debug("CRL prefetcher started with an interval of {} and {} distribution points of trusted certificates", interval, trustedDistributionPoints.size());
+        }
+    }
+
+    /**
+     * Refreshes the CRLs of all known distribution points, downloads are conditional if the CRL is cached already
+     */
+    public void refresh() {
+        final Set<URI> distributionPoints = new LinkedHashSet<>(trustedDistributionPoints);
+        distributionPoints.addAll(store.getKnownDistributionPoints());
+        
+        for (final URI distributionPoint : distributionPoints) {
+            refresh(distributionPoint);
+        }
+    }
+
+    private void refresh(final URI distributionPoint) {
+        lastFetches.put(distributionPoint, System.currentTimeMillis());
+        
+        final SecurityManager sm = System.getSecurityManager();
+
+        if (sm != null) {
+            sm.checkPermission(new SpecialPermission());
+        }
+        
+        try {
+            AccessController.doPrivileged((PrivilegedExceptionAction<Object>) () -> store.fetch(distributionPoint));
+        } catch (Exception e) {
+            log.warn("Unable to refresh CRL from {} due to {}", distributionPoint, ExceptionUtils.getRootCause(e).toString());
+        }
+    }
+
+    private void onMiss(final URI distributionPoint) {
+        final long now = System.currentTimeMillis();
+        final Long lastFetch = lastFetches.get(distributionPoint);
+        
+        if (lastFetch != null && now - lastFetch < MISS_RETRY_MILLIS) {
+            return;
+        }
+        
+        //only one thread wins, all others see the new timestamp
+        if (lastFetch == null ? lastFetches.putIfAbsent(distributionPoint, now) == null : lastFetches.replace(distributionPoint, lastFetch, now)) {
+            threadPool.generic().execute(() -> refresh(distributionPoint));
+        }
+    }
+
+    @Override
+    public void close() {
+        store.setMissListener(null);
+        
+        final Cancellable scheduled = this.scheduled;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.handler.ssl.SslHandler;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.network.InetAddresses;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * Counts TLS handshake failures per source address and temporarily blocks addresses which exceed
+ * {@code max_failures} within {@code decay}. Blocked addresses are checked when a channel is initialized,
+ * before any TLS work is done. Addresses in the allow list and the addresses of the cluster nodes this node
+ * connects to (added with {@link #allow(SocketAddress)}) are never blocked.
+ * <p>
+ * Lookups are lock-free and counters are plain atomics, racing updates of the same address may lose a count which is fine here.
+ */
+public class HandshakeFailureTracker {
+
+    public static final int DEFAULT_MAX_FAILURES = 10;
+    public static final TimeValue DEFAULT_DECAY = TimeValue.timeValueMinutes(1);
+    public static final TimeValue DEFAULT_BLOCK_DURATION = TimeValue.timeValueMinutes(1);
+
+    private static final int MAX_TRACKED_ADDRESSES = 10000;
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+    private final int maxFailures;
+    private final long decayNanos;
+    private final long blockNanos;
+    private final List<AddressRange> allowList;
+    private final Set<InetAddress> clusterNodes = ConcurrentHashMap.newKeySet();
+    private final ConcurrentMap<InetAddress, Entry> entries = new ConcurrentHashMap<>();
+
+    public HandshakeFailureTracker(final Settings settings) {
+        this.maxFailures = settings.getAsInt(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_MAX_FAILURES, DEFAULT_MAX_FAILURES);
+        this.decayNanos = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_DECAY, DEFAULT_DECAY).nanos();
+        this.blockNanos = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_BLOCK_DURATION, DEFAULT_BLOCK_DURATION).nanos();
+
+        final List<AddressRange> ranges = new ArrayList<>();
+        for (final String range : settings.getAsList(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ALLOWLIST, Collections.emptyList())) {
+            ranges.add(AddressRange.parse(range));
+        }
+        this.allowList = Collections.unmodifiableList(ranges);
+    }
+
+    public static boolean isEnabled(final Settings settings) {
+        return settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ENABLED, false);
+    }
+
+    /**
+     * Never blocks the given peer, like a cluster node this node connects to. Failures recorded
+     * for the peer so far are forgotten.
+     */
+    public void allow(final SocketAddress remoteAddress) {
+        final InetAddress address = getAddress(remoteAddress);
+
+        if (address == null || clusterNodes.contains(address) || clusterNodes.size() >= MAX_TRACKED_ADDRESSES) {
+            return;
+        }
+
+        clusterNodes.add(address);
+        entries.remove(address);
+    }
+
+    /**
+     * Records a failure of the handshake of the given handler, if it fails with an {@link SSLException}
+     * (plaintext peers, unknown CA, expired certificates, handshake timeout, ...).
+     * Connections closed by the peer before the handshake completed do not count.
+     */
+    public void watch(final SslHandler sslHandler, final SocketAddress remoteAddress) {
+        sslHandler.handshakeFuture().addListener(future -> {
+            if (!future.isSuccess() && future.cause() instanceof SSLException) {
+                onFailure(remoteAddress);
+            }
+        });
+    }
+
+    /**
+     * Records a failed handshake of the given peer
+     */
+    public void onFailure(final SocketAddress remoteAddress) {
+        final InetAddress address = getAddress(remoteAddress);
+
+        if (address == null || isAllowed(address)) {
+            return;
+        }
+
+        final long now = System.nanoTime();
+        Entry entry = entries.get(address);
+
+        if (entry == null) {
+            if (entries.size() >= MAX_TRACKED_ADDRESSES) {
+                purge(now);
+                if (entries.size() >= MAX_TRACKED_ADDRESSES) {
+                    return;
+                }
+            }
+
+            final Entry newEntry = new Entry(now);
+            entry = entries.putIfAbsent(address, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+
+        if (now - entry.windowStartNanos > decayNanos) {
+            entry.windowStartNanos = now;
+            entry.failures.set(0);
+        }
+
+        if (entry.failures.incrementAndGet() >= maxFailures && !entry.isBlocked(now)) {
+            entry.blockedUntilNanos = now + blockNanos;
+            entry.failures.set(0);
+            entry.windowStartNanos = now;
+            log.warn("{} failed {} TLS handshakes within {}, new connections will be rejected for {}", address.getHostAddress(),
+                    maxFailures, TimeValue.timeValueNanos(decayNanos), TimeValue.timeValueNanos(blockNanos));
+        }
+    }
+
+    /**
+     * @return true if new connections from the given peer have to be rejected
+     */
+    public boolean isBlocked(final SocketAddress remoteAddress) {
+        final InetAddress address = getAddress(remoteAddress);
+
+        if (address == null) {
+            return false;
+        }
+
+        final Entry entry = entries.get(address);
+        return entry != null && entry.isBlocked(System.nanoTime());
+    }
+
+    /**
+     * @return number of currently blocked addresses
+     */
+    public int getBlockedAddressCount() {
+        final long now = System.nanoTime();
+        int count = 0;
+        for (final Entry entry : entries.values()) {
+            if (entry.isBlocked(now)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isAllowed(final InetAddress address) {
+        if (clusterNodes.contains(address)) {
+            return true;
+        }
+        for (final AddressRange range : allowList) {
+            if (range.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void purge(final long now) {
+        for (final Iterator<Map.Entry<InetAddress, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+            final Entry entry = it.next().getValue();
+            if (!entry.isBlocked(now) && now - entry.windowStartNanos > decayNanos) {
+                it.remove();
+            }
+        }
+    }
+
+    private static InetAddress getAddress(final SocketAddress remoteAddress) {
+        return remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress) remoteAddress).getAddress() : null;
+    }
+
+    private static final class Entry {
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long windowStartNanos;
+        private volatile long blockedUntilNanos;
+
+        private Entry(final long now) {
+            this.windowStartNanos = now;
+            this.blockedUntilNanos = now;
+        }
+
+        private boolean isBlocked(final long now) {
+            return blockedUntilNanos - now > 0;
+        }
+    }
+
+    /**
+     * Single address or CIDR range like 10.0.0.0/8 or fd00::/8
+     */
+    static final class AddressRange {
+        private final byte[] network;
+        private final int prefixLength;
+
+        private AddressRange(final byte[] network, final int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        static AddressRange parse(final String range) {
+            final int slash = range.indexOf('/');
+            final byte[] network = InetAddresses.forString(slash < 0 ? range.trim() : range.substring(0, slash).trim()).getAddress();
+            final int prefixLength = slash < 0 ? network.length * 8 : Integer.parseInt(range.substring(slash + 1).trim());
+
+            if (prefixLength < 0 || prefixLength > network.length * 8) {
+                throw new IllegalArgumentException("Invalid prefix length in " + range);
+            }
+
+            return new AddressRange(network, prefixLength);
+        }
+
+        boolean contains(final InetAddress address) {
+            final byte[] bytes = address.getAddress();
+
+            if (bytes.length != network.length) {
+                return false;
+            }
+
+            int remaining = prefixLength;
+            for (int i = 0; remaining > 0; i++, remaining -= 8) {
+                final int mask = remaining >= 8 ? 0xff : (0xff << (8 - remaining)) & 0xff;
+                if ((bytes[i] & mask) != (network[i] & mask)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * Resolves the hostnames of peer addresses (reverse lookup) for hostname verification on an executor
+ * instead of the calling (event loop) thread. Results are cached per address for the TTL and concurrent
+ * lookups of the same address share one resolution.
+ * <p>
+ * If the lookup fails the address literal is used, like {@link InetSocketAddress#getHostName()} does.
+ */
+public class HostnameResolver {
+
+    private static final int MAX_CACHED_ADDRESSES = 10000;
+
+    private final Executor executor;
+    private final long ttlNanos;
+    private final SslStats stats;
+    private final ConcurrentMap<InetAddress, Entry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<InetAddress, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+
+    public HostnameResolver(final Executor executor, final TimeValue ttl, final SslStats stats) {
+        this.executor = executor;
+        this.ttlNanos = ttl.nanos();
+        this.stats = stats;
+    }
+
+    /**
+     * @return the cached hostname of the address or null if it needs to be resolved with {@link #resolve(InetSocketAddress)}
+     */
+    public String getCached(final InetSocketAddress address) {
+
+        final InetAddress inetAddress = address.getAddress();
+
+        if (inetAddress == null || isHostnameKnown(address)) {
+            //no lookup needed
+            return address.getHostString();
+        }
+
+        final Entry entry = cache.get(inetAddress);
+
+        if (entry != null && System.nanoTime() - entry.expiresNanos < 0) {
+            stats.onHostnameCacheHit();
+            return entry.hostname;
+        }
+
+        return null;
+    }
+
+    /**
+     * Resolves the hostname of the address on the executor, the returned future never completes exceptionally
+     */
+    public CompletableFuture<String> resolve(final InetSocketAddress address) {
+
+        final String cached = getCached(address);
+
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        final InetAddress inetAddress = address.getAddress();
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final CompletableFuture<String> existing = pending.putIfAbsent(inetAddress, future);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            executor.execute(() -> {
+                final long start = System.nanoTime();
+                String hostname;
+                try {
+                    hostname = inetAddress.getHostName();
+                } catch (final RuntimeException e) {
+                    hostname = inetAddress.getHostAddress();
+                }
+                final long now = System.nanoTime();
+                stats.onHostnameLookup(now - start);
+                put(inetAddress, new Entry(hostname, now + ttlNanos));
+                pending.remove(inetAddress, future);
+                future.complete(hostname);
+            });
+        } catch (final RuntimeException e) {
+            //rejected, for example while shutting down
+            pending.remove(inetAddress, future);
+            future.complete(inetAddress.getHostAddress());
+        }
+
+        return future;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    private void put(final InetAddress inetAddress, final Entry entry) {
+
+        if (ttlNanos <= 0) {
+            return;
+        }
+
+        if (cache.size() >= MAX_CACHED_ADDRESSES) {
+            final long now = System.nanoTime();
+            cache.values().removeIf(e -> now - e.expiresNanos >= 0);
+            if (cache.size() >= MAX_CACHED_ADDRESSES) {
+                return;
+            }
+        }
+
+        cache.put(inetAddress, entry);
+    }
+
+    /**
+     * Addresses created from a hostname carry it already
+     */
+    private static boolean isHostnameKnown(final InetSocketAddress address) {
+        return !address.getHostString().equals(address.getAddress().getHostAddress());
+    }
+
+    private static final class Entry {
+        private final String hostname;
+        private final long expiresNanos;
+
+        private Entry(final String hostname, final long expiresNanos) {
+            this.hostname = hostname;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Detects whether the Linux kernel of this node supports kernel TLS (kTLS). This is informational
+ * only, kTLS is never used: neither the JDK nor the OpenSSL engine of netty-tcnative can hand the
+ * negotiated keys over to the kernel, so TLS records are always processed by the
+ * {@link io.netty.handler.ssl.SslHandler}.
+ */
+public final class KernelTls {
+
+    private static final Logger log = LogManager.getLogger(KernelTls.class);
+    private static final Path AVAILABLE_ULP = Paths.get("/proc/sys/net/ipv4/tcp_available_ulp");
+    private static final Path TLS_MODULE = Paths.get("/sys/module/tls");
+
+    private static final String UNSUPPORTED_CAUSE = AccessController.doPrivileged((PrivilegedAction<String>) KernelTls::detect);
+
+    private KernelTls() {
+    }
+
+    /**
+     * @return true if the kernel provides the "tls" upper layer protocol
+     */
+    public static boolean isKernelSupported() {
+        return UNSUPPORTED_CAUSE == null;
+    }
+
+    /**
+     * @return why the kernel does not support kTLS or null if it does
+     */
+    public static String kernelUnsupportedCause() {
+        return UNSUPPORTED_CAUSE;
+    }
+
+    private static String detect() {
+
+        if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("linux")) {
+            return "kTLS is only supported on Linux";
+        }
+
+        try {
+            if (Files.isReadable(AVAILABLE_ULP)) {
+                final String ulps = new String(Files.readAllBytes(AVAILABLE_ULP), StandardCharsets.US_ASCII).trim();
+                if (Arrays.asList(ulps.split("\\s+")).contains("tls")) {
+                    return null;
+                }
+            }
+
+            if (Files.isDirectory(TLS_MODULE)) {
+                return null;
+            }
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unable to detect kTLS support due to {}", e.toString());
+            }
+            return "Unable to detect kTLS support: " + e;
+        }
+
+        return "tls kernel module not loaded (kernel 4.13+ with CONFIG_TLS required)";
+    }
+}
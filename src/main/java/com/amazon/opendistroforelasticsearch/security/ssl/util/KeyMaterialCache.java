@@ -0,0 +1,145 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslCachingX509KeyManagerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Cipher;
+import javax.crypto.EncryptedPrivateKeyInfo;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.net.ssl.KeyManagerFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Builds key manager factories which cache the native (OpenSSL) form of the certificate chain and private key.
+ * <p>
+ * Without them OpenSSL contexts which use a {@link KeyManagerFactory} (the default if OpenSSL supports it)
+ * convert the key material for every handshake. The cache lives as long as the context, a new context starts
+ * with an empty one.
+ */
+public final class KeyMaterialCache {
+
+    private static final Logger log = LogManager.getLogger(KeyMaterialCache.class);
+    private static final Pattern PEM_KEY = Pattern.compile(
+            "-----BEGIN (ENCRYPTED )?PRIVATE KEY-----([A-Za-z0-9+/=\\s]+)-----END (?:ENCRYPTED )?PRIVATE KEY-----");
+    private static final String[] KEY_ALGORITHMS = { "RSA", "EC", "DSA" };
+    private static final char[] EMPTY_PASSWORD = new char[0];
+
+    private KeyMaterialCache() {
+    }
+
+    public static boolean isSupported() {
+        return OpenSsl.isAvailable() && OpenSsl.supportsKeyManagerFactory();
+    }
+
+    public static KeyManagerFactory newKeyManagerFactory(final PrivateKey key, final X509Certificate[] chain)
+            throws GeneralSecurityException, IOException {
+        final KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        ks.load(null, null);
+        ks.setKeyEntry("key", key, EMPTY_PASSWORD, chain);
+        final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, EMPTY_PASSWORD);
+        return new OpenSslCachingX509KeyManagerFactory(kmf);
+    }
+
+    /**
+     * @return the factory or null if the PEM files are not in a format which is parsed here (in which case
+     *         the key material is left to Netty, which also reports any errors)
+     */
+    public static KeyManagerFactory newKeyManagerFactory(final File keyFile, final File chainFile, final String password) {
+        try {
+            final PrivateKey key = readPrivateKey(keyFile, password);
+
+            if (key == null) {
+                return null;
+            }
+
+            final Collection<? extends Certificate> certs;
+            try (InputStream in = new FileInputStream(chainFile)) {
+                certs = CertificateFactory.getInstance("X.509").generateCertificates(in);
+            }
+
+            if (certs.isEmpty()) {
+                return null;
+            }
+
+            return newKeyManagerFactory(key, certs.toArray(new X509Certificate[0]));
+        } catch (final Exception e) {
+            log.debug("Key material from {} is not cached due to {}", keyFile, e.toString());
+            return null;
+        }
+    }
+
+    public static PrivateKey readPrivateKey(final File keyFile, final String password) throws GeneralSecurityException, IOException {
+
+        final Matcher m = PEM_KEY.matcher(new String(Files.readAllBytes(keyFile.toPath()), StandardCharsets.US_ASCII));
+
+        if (!m.find()) {
+            //PKCS#1 and other formats
+            return null;
+        }
+
+        final byte[] der = Base64.getMimeDecoder().decode(m.group(2));
+        final PKCS8EncodedKeySpec keySpec;
+
+        if (m.group(1) != null) {
+            if (password == null) {
+                return null;
+            }
+            final EncryptedPrivateKeyInfo encrypted = new EncryptedPrivateKeyInfo(der);
+            final Cipher cipher = Cipher.getInstance(encrypted.getAlgName());
+            cipher.init(Cipher.DECRYPT_MODE, SecretKeyFactory.getInstance(encrypted.getAlgName())
+                    .generateSecret(new PBEKeySpec(password.toCharArray())), encrypted.getAlgParameters());
+            keySpec = encrypted.getKeySpec(cipher);
+        } else {
+            keySpec = new PKCS8EncodedKeySpec(der);
+        }
+
+        for (final String algorithm : KEY_ALGORITHMS) {
+            try {
+                return KeyFactory.getInstance(algorithm).generatePrivate(keySpec);
+            } catch (final GeneralSecurityException e) {
+                //try next
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.handler.ssl.ReferenceCountedOpenSslContext;
+import io.netty.handler.ssl.SslContext;
+import io.netty.internal.tcnative.SSL;
+import io.netty.internal.tcnative.SSLContext;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Lets OpenSSL free the read and write buffers of a connection whenever there is no pending
+ * record (SSL_MODE_RELEASE_BUFFERS) and allocate them again with the next record. The mode is set
+ * on the context, so it applies to every connection of the context, busy ones included, which pay
+ * with an allocation per record. Only the native buffers of OpenSSL are affected, buffers of the
+ * {@link io.netty.handler.ssl.SslHandler} (like the cumulation of partial records) are not.
+ * How much memory is released can not be read back from OpenSSL, and buffers are released
+ * per record, not after an idle period.
+ * <p>
+ * netty-tcnative is only referenced from here and only if the context is an OpenSSL context.
+ */
+public final class OpenSslBuffers {
+
+    private static final Logger log = LogManager.getLogger(OpenSslBuffers.class);
+
+    private OpenSslBuffers() {
+    }
+
+    /**
+     * @return true if the mode was set, false if the context is not an OpenSSL context or the mode could not be set
+     */
+    public static boolean releaseBuffers(final SslContext sslContext) {
+
+        if (!(sslContext instanceof ReferenceCountedOpenSslContext)) {
+            return false;
+        }
+
+        try {
+            @SuppressWarnings("deprecation")
+            final long ctx = ((ReferenceCountedOpenSslContext) sslContext).sslCtxPointer();
+            SSLContext.setMode(ctx, SSLContext.getMode(ctx) | SSL.SSL_MODE_RELEASE_BUFFERS);
+            return true;
+        } catch (final Throwable e) {
+            log.warn("Unable to set SSL_MODE_RELEASE_BUFFERS due to {}", e.toString());
+            return false;
+        }
+    }
+}
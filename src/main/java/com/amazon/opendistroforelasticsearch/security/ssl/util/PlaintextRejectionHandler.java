@@ -0,0 +1,207 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.ssl.NotSslRecordException;
+import io.netty.handler.ssl.SslHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Looks at the first bytes of a connection ahead of the {@link SslHandler}. If they are a TLS (or SSLv2 hello)
+ * record this handler removes itself and passes the bytes on. Otherwise the connection is closed right
+ * away, optionally after a static plaintext HTTP response, without going through
+ * {@link NotSslRecordException} and the exception handlers of the transports.
+ */
+public class PlaintextRejectionHandler extends ByteToMessageDecoder {
+
+    public enum Response {
+        /** close without response */
+        CLOSE,
+        /** answer plaintext HTTP requests with 400 Bad Request */
+        BAD_REQUEST,
+        /** answer plaintext HTTP requests with a redirect to https, 400 if there is no Host header */
+        REDIRECT;
+
+        public static Response parse(final String value) {
+            return Response.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final Logger log = LogManager.getLogger(PlaintextRejectionHandler.class);
+
+    //record type (1), version (2) and length (2)
+    private static final int SSL_RECORD_HEADER_LENGTH = 5;
+    private static final int MAX_METHOD_LENGTH = 7;
+    private static final int MAX_REQUEST_HEAD_LENGTH = 4096;
+
+    private static final ByteBuf BAD_REQUEST = Unpooled.unreleasableBuffer(Unpooled.copiedBuffer(
+            "HTTP/1.1 400 Bad Request\r\n"
+            + "Content-Type: text/plain; charset=UTF-8\r\n"
+            + "Content-Length: 30\r\n"
+            + "Connection: close\r\n"
+            + "\r\n"
+            + "This port requires TLS (https)", StandardCharsets.US_ASCII));
+
+    private final boolean http;
+    private final Response response;
+    private final SslStats stats;
+    private final HandshakeFailureTracker handshakeFailureTracker;
+
+    public PlaintextRejectionHandler(final boolean http, final Response response, final SslStats stats) {
+        this(http, response, stats, null);
+    }
+
+    /**
+     * @param handshakeFailureTracker records rejected peers as failed handshakes, may be null
+     */
+    public PlaintextRejectionHandler(final boolean http, final Response response, final SslStats stats,
+            final HandshakeFailureTracker handshakeFailureTracker) {
+        this.http = http;
+        this.response = http ? response : Response.CLOSE;
+        this.stats = stats;
+        this.handshakeFailureTracker = handshakeFailureTracker;
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx, final ByteBuf in, final List<Object> out) throws Exception {
+
+        if (in.readableBytes() < SSL_RECORD_HEADER_LENGTH) {
+            return;
+        }
+
+        if (SslHandler.isEncrypted(in)) {
+            //the cumulated bytes are passed on to the ssl handler on removal
+            ctx.pipeline().remove(this);
+            return;
+        }
+
+        stats.onPlaintextRejected(http);
+
+        if (handshakeFailureTracker != null) {
+            handshakeFailureTracker.onFailure(ctx.channel().remoteAddress());
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Someone ({}) speaks {} plaintext instead of ssl, will close the channel", ctx.channel().remoteAddress(),
+                    http ? "http" : "transport");
+        }
+
+        final ByteBuf plaintextResponse = response != Response.CLOSE && isHttpRequest(in) ? createResponse(in) : null;
+        in.skipBytes(in.readableBytes());
+
+        if (plaintextResponse != null) {
+            ctx.writeAndFlush(plaintextResponse).addListener(ChannelFutureListener.CLOSE);
+        } else {
+            ctx.close();
+        }
+    }
+
+    private ByteBuf createResponse(final ByteBuf in) {
+
+        if (response == Response.REDIRECT) {
+            final String head = in.toString(in.readerIndex(), Math.min(in.readableBytes(), MAX_REQUEST_HEAD_LENGTH), StandardCharsets.US_ASCII);
+            final String location = getRedirectLocation(head);
+
+            if (location != null) {
+                return Unpooled.copiedBuffer("HTTP/1.1 301 Moved Permanently\r\n"
+                        + "Location: " + location + "\r\n"
+                        + "Content-Length: 0\r\n"
+                        + "Connection: close\r\n"
+                        + "\r\n", StandardCharsets.US_ASCII);
+            }
+        }
+
+        return BAD_REQUEST.duplicate();
+    }
+
+    /**
+     * @return true if the bytes start with an upper case token followed by a space, like "GET " or "DELETE "
+     */
+    static boolean isHttpRequest(final ByteBuf in) {
+        final int start = in.readerIndex();
+        final int end = start + Math.min(in.readableBytes(), MAX_METHOD_LENGTH + 1);
+
+        for (int i = start; i < end; i++) {
+            final byte b = in.getByte(i);
+            if (b == ' ') {
+                return i > start;
+            }
+            if (b < 'A' || b > 'Z') {
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return https URL for the request target and Host header of the request head or null if there is no Host header
+     */
+    static String getRedirectLocation(final String head) {
+        final int targetStart = head.indexOf(' ') + 1;
+        final int targetEnd = head.indexOf(' ', targetStart);
+        final int requestLineEnd = head.indexOf('\r');
+
+        if (targetStart <= 0 || targetEnd < 0 || requestLineEnd < targetEnd) {
+            return null;
+        }
+
+        final String target = head.substring(targetStart, targetEnd);
+
+        for (int lineStart = requestLineEnd + 2; lineStart < head.length();) {
+            final int lineEnd = head.indexOf('\r', lineStart);
+
+            if (lineEnd < 0 || lineEnd == lineStart) {
+                //incomplete head or end of headers
+                return null;
+            }
+
+            if (head.regionMatches(true, lineStart, "Host:", 0, 5)) {
+                final String host = head.substring(lineStart + 5, lineEnd).trim();
+                if (host.isEmpty() || !isPrintable(host) || !isPrintable(target)) {
+                    return null;
+                }
+                return "https://" + host + (target.startsWith("/") ? target : "/");
+            }
+
+            lineStart = lineEnd + 2;
+        }
+
+        return null;
+    }
+
+    private static boolean isPrintable(final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c <= ' ' || c >= 0x7f) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
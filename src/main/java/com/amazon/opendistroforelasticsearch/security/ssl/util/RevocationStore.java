@@ -0,0 +1,329 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLConnection;
+import java.security.cert.CRLException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+
+/**
+ * In-memory store of CRLs downloaded from CRL distribution points (CRLDP), keyed by
+ * distribution point URI. CRLs are public data, so one store is shared by all validators
+ * of this JVM (like the JDK does for its own CRLDP support). The store is bounded by the
+ * encoded size of the CRLs, the least recently used ones are evicted.
+ * <p>
+ * Downloads are conditional (ETag/Last-Modified) once a CRL is cached. All distribution points
+ * asked for are remembered so that {@link CrlPrefetcher} can keep them up to date.
+ * <p>
+ * If a download fails the distribution point is not asked again on the validating thread before
+ * the retry delay is over, the last known CRL (even if outdated) is served meanwhile. This is
+ * how the JDK URICertStore behaves and keeps an unreachable distribution point from blocking
+ * every validation for the full connect/read timeouts.
+ * <p>
+ * The {@link #getGeneration() generation} changes whenever the revocation data changes, so that
+ * validation results cached elsewhere (e.g. per connection) can be recognized as outdated.
+ */
+public class RevocationStore {
+
+    private static final Logger log = LogManager.getLogger(RevocationStore.class);
+    private static final RevocationStore DEFAULT = new RevocationStore();
+    private static final int MAX_KNOWN_DISTRIBUTION_POINTS = 1024;
+    private static final long MAX_CACHED_CRL_BYTES = 64L * 1024 * 1024;
+
+    private final Cache<URI, Entry> crls = CacheBuilder.<URI, Entry>builder()
+            .setMaximumWeight(MAX_CACHED_CRL_BYTES).setWeigher((uri, entry) -> entry.size).build();
+    private final Set<URI> knownDistributionPoints = ConcurrentHashMap.newKeySet();
+    //System.nanoTime() until when no download is attempted from getCrls() after a failed one
+    private final ConcurrentMap<URI, Long> retryAfter = new ConcurrentHashMap<>();
+    private final AtomicLong fetches = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong generation = new AtomicLong();
+    private volatile int connectTimeoutMillis = 5000;
+    private volatile int readTimeoutMillis = 15000;
+    private volatile long retryDelayMillis = 60000;
+    private volatile Consumer<URI> missListener;
+
+    public static RevocationStore getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the CRLs for the given distribution points which are current at {@code date}
+     * (or now if date is null). Missing or outdated CRLs are downloaded if {@code fetchOnMiss} is true
+     * and the last download from the distribution point did not fail within the retry delay,
+     * otherwise the miss listener (if any) is notified. If no current CRL can be obtained the
+     * outdated CRL (if any) is returned.
+     */
+    public Collection<X509CRL> getCrls(final Collection<URI> distributionPoints, final Date date, final boolean fetchOnMiss) {
+
+        final List<X509CRL> result = new ArrayList<>(distributionPoints.size());
+
+        for (final URI distributionPoint : distributionPoints) {
+            
+            if (knownDistributionPoints.size() < MAX_KNOWN_DISTRIBUTION_POINTS) {
+                knownDistributionPoints.add(distributionPoint);
+            }
+            
+            X509CRL crl = get(distributionPoint);
+
+            if (crl == null || !isCurrent(crl, date)) {
+                if (fetchOnMiss) {
+                    if (!isBackingOff(distributionPoint)) {
+                        try {
+                            final X509CRL fetched = fetch(distributionPoint);
+                            if (fetched != null) {
+                                crl = fetched;
+                            }
+                        } catch (Exception e) {
+                            if (retryAfter.size() < MAX_KNOWN_DISTRIBUTION_POINTS) {
+                                retryAfter.put(distributionPoint, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMillis));
+                            }
+                            log.warn("Unable to fetch CRL from {} due to {}, will not retry within {} ms", distributionPoint, e.toString(),
+                                    retryDelayMillis);
+                        }
+                    }
+                } else {
+                    final Consumer<URI> listener = missListener;
+                    if (listener != null) {
+                        listener.accept(distributionPoint);
+                    }
+                }
+            }
+
+            if (crl != null) {
+                result.add(crl);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Downloads the CRL of the distribution point and puts it into this store.
+     * If a CRL is already cached the download is conditional and the cached
+     * CRL is returned if the server reports it as not modified.
+     *
+     * @return the CRL or null if the URI scheme is not supported
+     */
+    public X509CRL fetch(final URI distributionPoint) throws IOException, CRLException, CertificateException {
+
+        if (!isSupported(distributionPoint)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Unsupported CRL distribution point {}", distributionPoint);
+            }
+            return null;
+        }
+
+        final Entry cached = crls.get(distributionPoint);
+        final URLConnection connection = distributionPoint.toURL().openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setUseCaches(false);
+        
+        if (cached != null) {
+            if (cached.etag != null) {
+                connection.setRequestProperty("If-None-Match", cached.etag);
+            }
+            if (cached.lastModified > 0) {
+                connection.setIfModifiedSince(cached.lastModified);
+            }
+        }
+        
+        fetches.incrementAndGet();
+
+        if (cached != null && connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            
+            notModified.incrementAndGet();
+            ((HttpURLConnection) connection).disconnect();
+            
+            if (log.isDebugEnabled()) {
+                log.debug("CRL from {} not modified", distributionPoint);
+            }
+            
+            retryAfter.remove(distributionPoint);
+            return cached.crl;
+        }
+
+        final X509CRL crl;
+        try (InputStream in = connection.getInputStream()) {
+            crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(in);
+        }
+
+        crls.put(distributionPoint, new Entry(crl, connection.getHeaderField("ETag"), connection.getLastModified()));
+        retryAfter.remove(distributionPoint);
+        
+        if (cached == null || !cached.crl.equals(crl)) {
+            generation.incrementAndGet();
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Fetched CRL from {} (next update {})", distributionPoint, crl.getNextUpdate());
+        }
+
+        return crl;
+    }
+
+    public X509CRL get(final URI distributionPoint) {
+        final Entry entry = crls.get(distributionPoint);
+        return entry == null ? null : entry.crl;
+    }
+
+    public void put(final URI distributionPoint, final X509CRL crl) {
+        crls.put(distributionPoint, new Entry(crl, null, 0));
+        generation.incrementAndGet();
+    }
+
+    public void clear() {
+        crls.invalidateAll();
+        knownDistributionPoints.clear();
+        retryAfter.clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * @return a number which changes whenever a CRL of this store is added or replaced
+     *         or {@link #incrementGeneration()} is called
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Marks validation results cached with the current generation as outdated,
+     * e.g. because a CRL file or truststore was reloaded
+     */
+    public void incrementGeneration() {
+        generation.incrementAndGet();
+    }
+
+    public int size() {
+        return crls.count();
+    }
+
+    /**
+     * @return the distribution points which were asked for since this store was created or cleared
+     */
+    public Set<URI> getKnownDistributionPoints() {
+        return Collections.unmodifiableSet(knownDistributionPoints);
+    }
+
+    /**
+     * @return number of download attempts (including conditional ones)
+     */
+    public long getFetchCount() {
+        return fetches.get();
+    }
+
+    /**
+     * @return number of conditional downloads answered with "not modified"
+     */
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * @param missListener called (on the validating thread) if a CRL is missing or outdated and must not be fetched
+     */
+    public void setMissListener(Consumer<URI> missListener) {
+        this.missListener = missListener;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public void setReadTimeoutMillis(int readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * @param retryDelayMillis how long a distribution point is not asked again from {@link #getCrls(Collection, Date, boolean)}
+     *        after a failed download
+     */
+    public void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    private boolean isBackingOff(final URI distributionPoint) {
+        final Long deadline = retryAfter.get(distributionPoint);
+        
+        if (deadline == null) {
+            return false;
+        }
+        
+        if (System.nanoTime() - deadline >= 0) {
+            retryAfter.remove(distributionPoint, deadline);
+            return false;
+        }
+        
+        return true;
+    }
+
+    static boolean isSupported(final URI distributionPoint) {
+        final String scheme = distributionPoint.getScheme();
+        return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+    }
+
+    static boolean isCurrent(final X509CRL crl, final Date date) {
+        final Date nextUpdate = crl.getNextUpdate();
+        return nextUpdate == null || !nextUpdate.before(date == null ? new Date() : date);
+    }
+    
+    private static final class Entry {
+        private final X509CRL crl;
+        private final String etag;
+        private final long lastModified;
+        private final long size;
+
+        private Entry(final X509CRL crl, final String etag, final long lastModified) {
+            this.crl = crl;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.size = encodedSize(crl);
+        }
+
+        private static long encodedSize(final X509CRL crl) {
+            try {
+                return crl.getEncoded().length;
+            } catch (CRLException e) {
+                return 1;
+            }
+        }
+    }
+}
@@ -43,10 +43,13 @@ public final class SSLConfigConstants {
     public static final boolean OPENDISTRO_SECURITY_SSL_HTTP_ENABLED_DEFAULT = false;
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_CLIENTAUTH_MODE = "opendistro_security.ssl.http.clientauth_mode";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_ALIAS = "opendistro_security.ssl.http.keystore_alias";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_ADDITIONAL_ALIASES = "opendistro_security.ssl.http.keystore_additional_aliases";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_FILEPATH = "opendistro_security.ssl.http.keystore_filepath";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_FILEPATH = "opendistro_security.ssl.http.pemkey_filepath";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_PASSWORD = "opendistro_security.ssl.http.pemkey_password";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_PEMCERT_FILEPATH = "opendistro_security.ssl.http.pemcert_filepath";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_PEMCERT_ADDITIONAL_FILEPATHS = "opendistro_security.ssl.http.pemcert_additional_filepaths";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_PEMKEY_ADDITIONAL_FILEPATHS = "opendistro_security.ssl.http.pemkey_additional_filepaths";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_PEMTRUSTEDCAS_FILEPATH = "opendistro_security.ssl.http.pemtrustedcas_filepath";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_PASSWORD = "opendistro_security.ssl.http.keystore_password";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_KEYSTORE_TYPE = "opendistro_security.ssl.http.keystore_type";
@@ -59,11 +62,17 @@ public final class SSLConfigConstants {
     public static final boolean OPENDISTRO_SECURITY_SSL_TRANSPORT_ENABLED_DEFAULT = true;
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_ENFORCE_HOSTNAME_VERIFICATION = "opendistro_security.ssl.transport.enforce_hostname_verification";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_ENFORCE_HOSTNAME_VERIFICATION_RESOLVE_HOST_NAME = "opendistro_security.ssl.transport.resolve_hostname";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_RESOLVE_HOSTNAME_CACHE_TTL = "opendistro_security.ssl.transport.resolve_hostname_cache_ttl";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_WARMUP_ENABLED = "opendistro_security.ssl.transport.warmup.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_WARMUP_INTERVAL = "opendistro_security.ssl.transport.warmup.interval";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_ALIAS = "opendistro_security.ssl.transport.keystore_alias";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_ADDITIONAL_ALIASES = "opendistro_security.ssl.transport.keystore_additional_aliases";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_FILEPATH = "opendistro_security.ssl.transport.keystore_filepath";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_FILEPATH = "opendistro_security.ssl.transport.pemkey_filepath";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_PASSWORD = "opendistro_security.ssl.transport.pemkey_password";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMCERT_FILEPATH = "opendistro_security.ssl.transport.pemcert_filepath";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMCERT_ADDITIONAL_FILEPATHS = "opendistro_security.ssl.transport.pemcert_additional_filepaths";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMKEY_ADDITIONAL_FILEPATHS = "opendistro_security.ssl.transport.pemkey_additional_filepaths";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PEMTRUSTEDCAS_FILEPATH = "opendistro_security.ssl.transport.pemtrustedcas_filepath";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_PASSWORD = "opendistro_security.ssl.transport.keystore_password";
     public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_KEYSTORE_TYPE = "opendistro_security.ssl.transport.keystore_type";
@@ -85,6 +94,47 @@ public final class SSLConfigConstants {
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_OCSP = "opendistro_security.ssl.http.crl.disable_ocsp";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_CRLDP = "opendistro_security.ssl.http.crl.disable_crldp";
     public static final String OPENDISTRO_SECURITY_SSL_HTTP_CRL_VALIDATION_DATE = "opendistro_security.ssl.http.crl.validation_date";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_CRL_FAST_PATH_ENABLED = "opendistro_security.ssl.http.crl.fast_path_enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_ENABLED = "opendistro_security.ssl.http.crl.prefetch.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_INTERVAL = "opendistro_security.ssl.http.crl.prefetch.interval";
+    
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_ENABLED = "opendistro_security.ssl.http.async_validation.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_TIMEOUT = "opendistro_security.ssl.http.async_validation.timeout";
+
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_HANDSHAKE_TIMEOUT = "opendistro_security.ssl.http.handshake_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_CLOSE_NOTIFY_FLUSH_TIMEOUT = "opendistro_security.ssl.http.close_notify_flush_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_CLOSE_NOTIFY_READ_TIMEOUT = "opendistro_security.ssl.http.close_notify_read_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_WRAP_DATA_SIZE = "opendistro_security.ssl.http.wrap_data_size";
+    public static final String OPENDISTRO_SECURITY_SSL_FAILURE_LOG_SUMMARY_INTERVAL = "opendistro_security.ssl.failure_log.summary_interval";
+    public static final String OPENDISTRO_SECURITY_SSL_FAILURE_LOG_ERROR_STACKTRACE_SAMPLE_RATE = "opendistro_security.ssl.failure_log.error_stacktrace_sample_rate";
+    public static final String OPENDISTRO_SECURITY_SSL_FAILURE_LOG_WARN_STACKTRACE_SAMPLE_RATE = "opendistro_security.ssl.failure_log.warn_stacktrace_sample_rate";
+    public static final String OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ENABLED = "opendistro_security.ssl.handshake_failure_blocking.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_MAX_FAILURES = "opendistro_security.ssl.handshake_failure_blocking.max_failures";
+    public static final String OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_DECAY = "opendistro_security.ssl.handshake_failure_blocking.decay";
+    public static final String OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_BLOCK_DURATION = "opendistro_security.ssl.handshake_failure_blocking.block_duration";
+    public static final String OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ALLOWLIST = "opendistro_security.ssl.handshake_failure_blocking.allowlist";
+    public static final String OPENDISTRO_SECURITY_SSL_OPENSSL_KEY_MATERIAL_CACHE_ENABLED = "opendistro_security.ssl.openssl.key_material_cache.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_PROBE_CACHE_ENABLED = "opendistro_security.ssl.probe_cache.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_CIPHER_BENCHMARK_ENABLED = "opendistro_security.ssl.cipher_benchmark.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_ENABLED = "opendistro_security.ssl.engine_memory_accounting.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_BYTES_PER_ENGINE = "opendistro_security.ssl.engine_memory_accounting.bytes_per_engine";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_PLAINTEXT_REJECTION_ENABLED = "opendistro_security.ssl.http.plaintext_rejection.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_PLAINTEXT_REJECTION_RESPONSE = "opendistro_security.ssl.http.plaintext_rejection.response";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_ENGINE_ALLOCATOR = "opendistro_security.ssl.http.engine_allocator";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_ENABLED = "opendistro_security.ssl.http.dynamic_record_size.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_SMALL_RECORD_SIZE = "opendistro_security.ssl.http.dynamic_record_size.small_record_size";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_THRESHOLD = "opendistro_security.ssl.http.dynamic_record_size.threshold";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_DYNAMIC_RECORD_SIZE_IDLE_TIMEOUT = "opendistro_security.ssl.http.dynamic_record_size.idle_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_HTTP_OPENSSL_RELEASE_BUFFERS_ENABLED = "opendistro_security.ssl.http.openssl.release_buffers.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_HANDSHAKE_TIMEOUT = "opendistro_security.ssl.transport.handshake_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_CLOSE_NOTIFY_FLUSH_TIMEOUT = "opendistro_security.ssl.transport.close_notify_flush_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_CLOSE_NOTIFY_READ_TIMEOUT = "opendistro_security.ssl.transport.close_notify_read_timeout";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_WRAP_DATA_SIZE = "opendistro_security.ssl.transport.wrap_data_size";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_ENGINE_ALLOCATOR = "opendistro_security.ssl.transport.engine_allocator";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_PLAINTEXT_REJECTION_ENABLED = "opendistro_security.ssl.transport.plaintext_rejection.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_ENABLED = "opendistro_security.ssl.transport.flush_consolidation.enabled";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_EXPLICIT_FLUSH_AFTER_FLUSHES = "opendistro_security.ssl.transport.flush_consolidation.explicit_flush_after_flushes";
+    public static final String OPENDISTRO_SECURITY_SSL_TRANSPORT_FLUSH_CONSOLIDATION_WHEN_NO_READ_IN_PROGRESS = "opendistro_security.ssl.transport.flush_consolidation.consolidate_when_no_read_in_progress";
 
     public static final String OPENDISTRO_SECURITY_SSL_ALLOW_CLIENT_INITIATED_RENEGOTIATION = "opendistro_security.ssl.allow_client_initiated_renegotiation";
 
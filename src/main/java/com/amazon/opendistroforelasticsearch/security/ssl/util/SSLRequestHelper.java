@@ -42,10 +42,13 @@ import java.security.cert.CRL;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.Objects;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -56,6 +59,8 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.SpecialPermission;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.env.Environment;
@@ -68,6 +73,11 @@ import com.amazon.opendistroforelasticsearch.security.ssl.transport.PrincipalExt
 public class SSLRequestHelper {
 
     private static final Logger log = LogManager.getLogger(SSLRequestHelper.class);
+    private static final int MAX_CACHED_VALIDATORS = 16;
+    //validators are thread safe and expensive to set up (truststore, CRL file), so they are reused across requests
+    //as long as the files they were created from are unchanged (least recently used ones are evicted)
+    private static final Cache<ValidatorKey, CachedValidator> validators = CacheBuilder.<ValidatorKey, CachedValidator>builder()
+            .setMaximumWeight(MAX_CACHED_VALIDATORS).build();
     
     public static class SSLInfo {
         private final X509Certificate[] x509Certs;
@@ -205,59 +215,8 @@ public class SSLRequestHelper {
             return true;
         }
         
-        final Environment env = new Environment(settings, configPath);
-        
         try {
-        
-            Collection<? extends CRL> crls = null;
-            final String crlFile = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_FILE);
-
-            if(crlFile != null) {
-                final File crl = env.configFile().resolve(crlFile).toAbsolutePath().toFile();
-                try(FileInputStream crlin = new FileInputStream(crl)) {
-                    crls = CertificateFactory.getInstance("X.509").generateCRLs(crlin);
-                }
-                
-                if(log.isTraceEnabled()) {
-                    log.trace("crls from file: "+crls.size());
-                }
-            } else {
-                if(log.isTraceEnabled()) {
-                    log.trace("no crl file configured");
-                }
-            }
-         
-            final String truststore = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_FILEPATH);
-            CertificateValidator validator = null;
-            
-            if(truststore != null) {
-                final String truststoreType = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_TYPE, "JKS");
-                final String truststorePassword = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_PASSWORD, "changeit");
-                //final String truststoreAlias = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_ALIAS, null);
-    
-                final KeyStore ts = KeyStore.getInstance(truststoreType);
-                try(FileInputStream fin = new FileInputStream(new File(env.configFile().resolve(truststore).toAbsolutePath().toString()))) {
-                    ts.load(fin, (truststorePassword == null || truststorePassword.length() == 0) ?null:truststorePassword.toCharArray());
-                }
-                validator = new CertificateValidator(ts, crls);
-            } else {
-                final File trustedCas = env.configFile().resolve(settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMTRUSTEDCAS_FILEPATH, "")).toAbsolutePath().toFile();
-                try(FileInputStream trin = new FileInputStream(trustedCas)) {
-                    Collection<? extends Certificate> cert =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
-                    validator = new CertificateValidator(cert.toArray(new X509Certificate[0]), crls);
-                }               
-            }
-            
-            validator.setEnableCRLDP(!settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_CRLDP, false));
-            validator.setEnableOCSP(!settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_OCSP, false));
-            validator.setCheckOnlyEndEntities(settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_CHECK_ONLY_END_ENTITIES, true));
-            validator.setPreferCrl(settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFER_CRLFILE_OVER_OCSP, false));
-            Long dateTimestamp = settings.getAsLong(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_VALIDATION_DATE, null);
-            if(dateTimestamp != null && dateTimestamp.longValue() < 0) {
-                dateTimestamp = null;
-            }
-            validator.setDate(dateTimestamp==null?null:new Date(dateTimestamp.longValue()));
-            validator.validate(x509Certs);
+            getValidator(settings, configPath).validate(x509Certs);
             
             return true;
             
@@ -270,4 +229,157 @@ public class SSLRequestHelper {
         
         return false;
     }
+    
+    /**
+     * @return the (shared) validator for HTTP client certificates as configured in the settings,
+     *         recreated if the CRL file or the truststore was modified since it was created
+     */
+    public static CertificateValidator getValidator(final Settings settings, final Path configPath) throws Exception {
+        final ValidatorKey key = new ValidatorKey(settings, configPath);
+        CachedValidator cached = validators.get(key);
+        
+        if(cached == null || cached.isModified()) {
+            
+            final boolean reload = cached != null;
+            
+            if(reload && log.isDebugEnabled()) {
+                log.debug("CRL file or truststore modified, reloading certificate validator");
+            }
+            
+            final List<FileStamp> files = new ArrayList<>(2);
+            cached = new CachedValidator(createValidator(settings, configPath, files), files);
+            validators.put(key, cached);
+            
+            if(reload) {
+                //connections validated with the previous CRLs or trusted certificates are validated again
+                cached.validator.getRevocationStore().incrementGeneration();
+            }
+        }
+        
+        return cached.validator;
+    }
+    
+    private static CertificateValidator createValidator(final Settings settings, final Path configPath, final List<FileStamp> files) throws Exception {
+        
+        final Environment env = new Environment(settings, configPath);
+        
+        Collection<? extends CRL> crls = null;
+        final String crlFile = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_FILE);
+
+        if(crlFile != null) {
+            final File crl = env.configFile().resolve(crlFile).toAbsolutePath().toFile();
+            //stamp before reading, so a modification while reading triggers a reload
+            files.add(new FileStamp(crl));
+            try(FileInputStream crlin = new FileInputStream(crl)) {
+                crls = CertificateFactory.getInstance("X.509").generateCRLs(crlin);
+            }
+            
+            if(log.isTraceEnabled()) {
+                log.trace("crls from file: "+crls.size());
+            }
+        } else {
+            if(log.isTraceEnabled()) {
+                log.trace("no crl file configured");
+            }
+        }
+     
+        final String truststore = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_FILEPATH);
+        CertificateValidator validator = null;
+        
+        if(truststore != null) {
+            final String truststoreType = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_TYPE, "JKS");
+            final String truststorePassword = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_PASSWORD, "changeit");
+            //final String truststoreAlias = settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_TRUSTSTORE_ALIAS, null);
+
+            final KeyStore ts = KeyStore.getInstance(truststoreType);
+            final File truststoreFile = env.configFile().resolve(truststore).toAbsolutePath().toFile();
+            files.add(new FileStamp(truststoreFile));
+            try(FileInputStream fin = new FileInputStream(truststoreFile)) {
+                ts.load(fin, (truststorePassword == null || truststorePassword.length() == 0) ?null:truststorePassword.toCharArray());
+            }
+            validator = new CertificateValidator(ts, crls);
+        } else {
+            final File trustedCas = env.configFile().resolve(settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMTRUSTEDCAS_FILEPATH, "")).toAbsolutePath().toFile();
+            files.add(new FileStamp(trustedCas));
+            try(FileInputStream trin = new FileInputStream(trustedCas)) {
+                Collection<? extends Certificate> cert =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+                validator = new CertificateValidator(cert.toArray(new X509Certificate[0]), crls);
+            }               
+        }
+        
+        validator.setEnableCRLDP(!settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_CRLDP, false));
+        validator.setEnableOCSP(!settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_DISABLE_OCSP, false));
+        validator.setCheckOnlyEndEntities(settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_CHECK_ONLY_END_ENTITIES, true));
+        validator.setPreferCrl(settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFER_CRLFILE_OVER_OCSP, false));
+        Long dateTimestamp = settings.getAsLong(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_VALIDATION_DATE, null);
+        if(dateTimestamp != null && dateTimestamp.longValue() < 0) {
+            dateTimestamp = null;
+        }
+        validator.setDate(dateTimestamp==null?null:new Date(dateTimestamp.longValue()));
+        validator.setFastPath(settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_FAST_PATH_ENABLED, true));
+        //CRLs of distribution points are kept up to date by the CrlPrefetcher
+        validator.setFetchCrlsOnMiss(!settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_PREFETCH_ENABLED, false));
+        return validator;
+    }
+    
+    private static final class CachedValidator {
+        private final CertificateValidator validator;
+        private final List<FileStamp> files;
+
+        CachedValidator(final CertificateValidator validator, final List<FileStamp> files) {
+            this.validator = validator;
+            this.files = files;
+        }
+
+        boolean isModified() {
+            for (final FileStamp file : files) {
+                if (file.isModified()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+    
+    private static final class FileStamp {
+        private final File file;
+        private final long lastModified;
+        private final long length;
+
+        FileStamp(final File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+
+        boolean isModified() {
+            //mtime granularity may be coarse, so the size is compared too
+            return file.lastModified() != lastModified || file.length() != length;
+        }
+    }
+    
+    private static final class ValidatorKey {
+        private final Settings settings;
+        private final Path configPath;
+
+        ValidatorKey(final Settings settings, final Path configPath) {
+            this.settings = settings;
+            this.configPath = configPath;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(settings) * 31 + Objects.hashCode(configPath);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof ValidatorKey)) {
+                return false;
+            }
+            final ValidatorKey other = (ValidatorKey) obj;
+            //settings are immutable, so identity is sufficient and cheap
+            return settings == other.settings && Objects.equals(configPath, other.configPath);
+        }
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.handler.ssl.OpenSslCachingX509KeyManagerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.net.ssl.KeyManagerFactory;
+
+/**
+ * Several private keys with their certificate chains (typically one ECDSA and one RSA key) served by one
+ * server context. The key manager picks the key which matches what the client offered, so clients which
+ * support ECDSA get the cheaper ECDSA handshake and older clients still get RSA.
+ */
+public final class ServerKeyMaterial {
+
+    private static final char[] EMPTY_PASSWORD = new char[0];
+
+    private final List<PrivateKey> keys = new ArrayList<>();
+    private final List<X509Certificate[]> chains = new ArrayList<>();
+
+    public ServerKeyMaterial add(final PrivateKey key, final X509Certificate[] chain) {
+        keys.add(key);
+        chains.add(chain);
+        return this;
+    }
+
+    /**
+     * Adds a PKCS#8 PEM key (optionally encrypted) and its PEM certificate chain
+     */
+    public ServerKeyMaterial add(final File keyFile, final File chainFile, final String password) throws GeneralSecurityException, IOException {
+
+        final PrivateKey key = KeyMaterialCache.readPrivateKey(keyFile, password);
+
+        if (key == null) {
+            throw new GeneralSecurityException("Unable to read " + keyFile + ", only PKCS#8 keys can be combined with other keys");
+        }
+
+        final X509Certificate[] chain = readCertificates(chainFile);
+
+        if (chain.length == 0) {
+            throw new GeneralSecurityException(chainFile + " does not contain valid certificates");
+        }
+
+        return add(key, chain);
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * @return true if there is a key with the given algorithm (RSA, EC, ...)
+     */
+    public boolean hasKeyAlgorithm(final String algorithm) {
+        for (final PrivateKey key : keys) {
+            if (algorithm.equalsIgnoreCase(key.getAlgorithm())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param cacheNativeKeyMaterial true to keep the OpenSSL form of the keys, see {@link KeyMaterialCache}
+     */
+    public KeyManagerFactory newKeyManagerFactory(final boolean cacheNativeKeyMaterial) throws GeneralSecurityException, IOException {
+        final KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        ks.load(null, null);
+
+        for (int i = 0; i < keys.size(); i++) {
+            ks.setKeyEntry("key" + i, keys.get(i), EMPTY_PASSWORD, chains.get(i));
+        }
+
+        final KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        kmf.init(ks, EMPTY_PASSWORD);
+        return cacheNativeKeyMaterial ? new OpenSslCachingX509KeyManagerFactory(kmf) : kmf;
+    }
+
+    /**
+     * @return the cipher suites with the ECDSA suites first, otherwise in the given order
+     */
+    public static List<String> preferEcdsa(final List<String> cipherSuites) {
+        final List<String> reordered = new ArrayList<>(cipherSuites.size());
+        for (final String cipherSuite : cipherSuites) {
+            if (cipherSuite.contains("_ECDSA_")) {
+                reordered.add(cipherSuite);
+            }
+        }
+        for (final String cipherSuite : cipherSuites) {
+            if (!cipherSuite.contains("_ECDSA_")) {
+                reordered.add(cipherSuite);
+            }
+        }
+        return reordered;
+    }
+
+    public static X509Certificate[] readCertificates(final File file) throws GeneralSecurityException, IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            final Collection<? extends Certificate> certs = CertificateFactory.getInstance("X.509").generateCertificates(in);
+            return certs.toArray(new X509Certificate[0]);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of successful signature verifications, keyed by the SHA-256 fingerprints of the
+ * issuer public key and of the signed certificate or CRL. Only the signature check is memoized,
+ * validity, constraints and revocation are still checked by the caller on every use.
+ * <p>
+ * Verifications with all key types and sizes are cached, even an RSA-2048 verification costs
+ * about twenty times as much as computing the fingerprints.
+ */
+public class SignatureCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final SignatureCache DEFAULT = new SignatureCache(DEFAULT_MAX_ENTRIES);
+
+    private static final ThreadLocal<MessageDigest> SHA256 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final Cache<Key, Boolean> verified;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SignatureCache(final int maxEntries) {
+        this.verified = CacheBuilder.<Key, Boolean>builder().setMaximumWeight(maxEntries).build();
+    }
+
+    public static SignatureCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Like {@link X509Certificate#verify(PublicKey)}, but skips the verification if it already succeeded before
+     */
+    public void verify(final X509Certificate cert, final PublicKey issuerKey) throws GeneralSecurityException {
+        final Key key = new Key(issuerKey.getEncoded(), cert.getEncoded());
+
+        if (isVerified(key)) {
+            return;
+        }
+
+        cert.verify(issuerKey);
+        verified.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Like {@link X509CRL#verify(PublicKey)}, but skips the verification if it already succeeded before
+     */
+    public void verify(final X509CRL crl, final PublicKey issuerKey) throws GeneralSecurityException {
+        final Key key = new Key(issuerKey.getEncoded(), crl.getEncoded());
+
+        if (isVerified(key)) {
+            return;
+        }
+
+        crl.verify(issuerKey);
+        verified.put(key, Boolean.TRUE);
+    }
+
+    private boolean isVerified(final Key key) {
+        if (verified.get(key) != null) {
+            hits.increment();
+            return true;
+        }
+
+        misses.increment();
+        return false;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return verified.count();
+    }
+
+    public void clear() {
+        verified.invalidateAll();
+    }
+
+    private static final class Key {
+        private final byte[] issuerKeyFingerprint;
+        private final byte[] signedFingerprint;
+        private final int hashCode;
+
+        private Key(final byte[] issuerKey, final byte[] signed) {
+            final MessageDigest digest = SHA256.get();
+            this.issuerKeyFingerprint = digest.digest(issuerKey);
+            this.signedFingerprint = digest.digest(signed);
+            this.hashCode = 31 * Arrays.hashCode(issuerKeyFingerprint) + Arrays.hashCode(signedFingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return Arrays.equals(signedFingerprint, other.signedFingerprint) && Arrays.equals(issuerKeyFingerprint, other.issuerKeyFingerprint);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.channel.Channel;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+
+/**
+ * Charges an estimate of the memory held by the SSLEngine of a channel during the handshake (for OpenSSL mostly
+ * native memory outside of the heap) to the in flight requests circuit breaker. The charge is released once the
+ * handshake is done or the channel is closed, whichever comes first.
+ * <p>
+ * Inbound channels are refused once the breaker trips, so that connection floods end in refused
+ * handshakes instead of exhausted memory. Outbound channels (node to node) are always charged but never refused.
+ * <p>
+ * Established connections are not charged, so idle keep-alive connections do not reduce the headroom of the
+ * breaker for requests.
+ */
+public class SslEngineMemoryAccounting {
+
+    public static final ByteSizeValue DEFAULT_BYTES_PER_ENGINE = new ByteSizeValue(48, ByteSizeUnit.KB);
+    private static final String LABEL = "<ssl_engine>";
+    private static final AttributeKey<AtomicBoolean> CHARGED = AttributeKey.valueOf("opendistro_security_ssl_engine_memory_charged");
+
+    private final CircuitBreakerService circuitBreakerService;
+    private final long bytesPerEngine;
+    private final SslStats stats;
+
+    public SslEngineMemoryAccounting(final Settings settings, final CircuitBreakerService circuitBreakerService, final SslStats stats) {
+        this.circuitBreakerService = circuitBreakerService;
+        this.bytesPerEngine = settings.getAsBytesSize(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_BYTES_PER_ENGINE,
+                DEFAULT_BYTES_PER_ENGINE).getBytes();
+        this.stats = stats;
+    }
+
+    public static boolean isEnabled(final Settings settings) {
+        return settings.getAsBoolean(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_ENABLED, false);
+    }
+
+    /**
+     * Charges the engine memory of an inbound channel
+     *
+     * @throws CircuitBreakingException if the breaker trips, the channel must then be closed without creating an engine
+     */
+    public void reserve(final Channel channel) throws CircuitBreakingException {
+        getBreaker().addEstimateBytesAndMaybeBreak(bytesPerEngine, LABEL);
+        charged(channel);
+    }
+
+    /**
+     * Charges the engine memory of an outbound channel without tripping the breaker
+     */
+    public void charge(final Channel channel) {
+        getBreaker().addWithoutBreaking(bytesPerEngine);
+        charged(channel);
+    }
+
+    /**
+     * Releases the charge of the channel as soon as the handshake of the given handler is done, successful or not
+     */
+    public void releaseAfterHandshake(final Channel channel, final SslHandler sslHandler) {
+        sslHandler.handshakeFuture().addListener(f -> release(channel));
+    }
+
+    private void charged(final Channel channel) {
+        channel.attr(CHARGED).set(new AtomicBoolean(true));
+        stats.onEngineMemoryCharged(bytesPerEngine);
+        channel.closeFuture().addListener(f -> release(channel));
+    }
+
+    private void release(final Channel channel) {
+        final AtomicBoolean charged = channel.attr(CHARGED).get();
+
+        if (charged != null && charged.compareAndSet(true, false)) {
+            getBreaker().addWithoutBreaking(-bytesPerEngine);
+            stats.onEngineMemoryCharged(-bytesPerEngine);
+        }
+    }
+
+    private CircuitBreaker getBreaker() {
+        return circuitBreakerService.getBreaker(CircuitBreaker.IN_FLIGHT_REQUESTS);
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.ssl.NotSslRecordException;
+
+import java.io.Closeable;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.net.ssl.SSLException;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.Scheduler.Cancellable;
+import org.elasticsearch.threadpool.ThreadPool;
+
+/**
+ * Logs TLS failures of connections (plaintext peers, handshake and other {@link javax.net.ssl.SSLException}s)
+ * without flooding the log during certificate mix-ups or scans.
+ * <p>
+ * Failures are aggregated by channel type, cause class and remote address prefix (/24 for IPv4, /64 for IPv6).
+ * The first failure of an aggregate is logged right away, further ones are only counted and summarized once
+ * per summary interval (by a task scheduled with {@link #start(ThreadPool)}). Stack traces are logged for
+ * every n-th failure of an aggregate only, n can be configured per log level. If debug logging is enabled
+ * or the summary interval is 0 every failure is logged.
+ * <p>
+ * The exception handlers of the HTTP and transport pipelines pass everything they catch to
+ * {@link #reportSslFailure(boolean, String, Throwable, SocketAddress)}.
+ */
+public class SslFailureReporter implements Closeable {
+
+    public static final TimeValue DEFAULT_SUMMARY_INTERVAL = TimeValue.timeValueMinutes(1);
+    public static final int DEFAULT_ERROR_STACKTRACE_SAMPLE_RATE = 100;
+    public static final int DEFAULT_WARN_STACKTRACE_SAMPLE_RATE = 0;
+
+    private static final int MAX_AGGREGATES = 1024;
+    private static final Aggregate OTHERS = new Aggregate("*", "*", "others");
+
+    private final Logger log;
+    private final SslStats stats;
+    private final TimeValue summaryInterval;
+    private final int errorStacktraceSampleRate;
+    private final int warnStacktraceSampleRate;
+    private final ConcurrentMap<Aggregate, LongAdder> counts = new ConcurrentHashMap<>();
+    private final AtomicLong lastSummaryNanos = new AtomicLong(System.nanoTime());
+    private volatile Cancellable scheduled;
+
+    public SslFailureReporter(final Settings settings, final Logger log, final SslStats stats) {
+        this.log = log;
+        this.stats = stats;
+        this.summaryInterval = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_SUMMARY_INTERVAL, DEFAULT_SUMMARY_INTERVAL);
+        this.errorStacktraceSampleRate = settings.getAsInt(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_ERROR_STACKTRACE_SAMPLE_RATE,
+                DEFAULT_ERROR_STACKTRACE_SAMPLE_RATE);
+        this.warnStacktraceSampleRate = settings.getAsInt(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_WARN_STACKTRACE_SAMPLE_RATE,
+                DEFAULT_WARN_STACKTRACE_SAMPLE_RATE);
+    }
+
+    /**
+     * Schedules the summary of the aggregated failures once per summary interval
+     */
+    public void start(final ThreadPool threadPool) {
+        if (summaryInterval.nanos() > 0) {
+            scheduled = threadPool.scheduleWithFixedDelay(this::logSummary, summaryInterval, ThreadPool.Names.GENERIC);
+        }
+    }
+
+    /**
+     * @return the cause of a {@link DecoderException}, otherwise the given throwable
+     */
+    public static Throwable unwrap(final Throwable cause) {
+        return cause instanceof DecoderException ? cause.getCause() : cause;
+    }
+
+    /**
+     * Reports the (unwrapped) cause caught by the pipeline of a channel if it is a TLS failure, that is a plaintext
+     * peer or any other {@link SSLException}. Plaintext peers are counted in the stats as well.
+     *
+     * @return true if the cause was a TLS failure, the caller closes the channel then
+     */
+    public boolean reportSslFailure(final boolean http, final String channelType, final Throwable cause, final SocketAddress remoteAddress) {
+
+        if (cause instanceof NotSslRecordException) {
+            stats.onPlaintextRejected(http);
+        } else if (!(cause instanceof SSLException)) {
+            return false;
+        }
+
+        report(channelType, cause, remoteAddress);
+        return true;
+    }
+
+    /**
+     * @param channelType "http", "transport" or "transport client"
+     * @param cause the unwrapped cause (not the {@link io.netty.handler.codec.DecoderException})
+     * @param remoteAddress the address of the peer, may be null
+     */
+    public void report(final String channelType, final Throwable cause, final SocketAddress remoteAddress) {
+
+        final boolean plaintext = cause instanceof NotSslRecordException;
+        final Level level = plaintext ? Level.WARN : Level.ERROR;
+
+        if (summaryInterval.nanos() <= 0 || log.isDebugEnabled()) {
+            log(level, channelType, cause, remoteAddress, !plaintext || log.isDebugEnabled());
+            return;
+        }
+
+        Aggregate aggregate = new Aggregate(channelType, cause.getClass().getSimpleName(), getPrefix(remoteAddress));
+
+        if (counts.size() >= MAX_AGGREGATES && !counts.containsKey(aggregate)) {
+            aggregate = OTHERS;
+        }
+
+        LongAdder count = counts.get(aggregate);
+        boolean first = false;
+
+        if (count == null) {
+            final LongAdder newCount = new LongAdder();
+            count = counts.putIfAbsent(aggregate, newCount);
+            if (count == null) {
+                count = newCount;
+                first = true;
+            }
+        }
+
+        count.increment();
+
+        final int sampleRate = plaintext ? warnStacktraceSampleRate : errorStacktraceSampleRate;
+
+        if (first) {
+            log(level, channelType, cause, remoteAddress, sampleRate > 0);
+        } else if (sampleRate > 0 && count.sum() % sampleRate == 0) {
+            log(level, channelType, cause, remoteAddress, true);
+        }
+    }
+
+    private void log(final Level level, final String channelType, final Throwable cause, final SocketAddress remoteAddress,
+            final boolean withStacktrace) {
+
+        if (!log.isEnabled(level)) {
+            return;
+        }
+
+        if (cause instanceof NotSslRecordException) {
+            if (withStacktrace) {
+                log.log(level, "Someone (" + remoteAddress + ") speaks " + channelType + " plaintext instead of ssl, will close the channel", cause);
+            } else {
+                log.log(level, "Someone ({}) speaks {} plaintext instead of ssl, will close the channel", remoteAddress, channelType);
+            }
+        } else {
+            if (withStacktrace) {
+                log.log(level, "SSL Problem " + cause.getMessage(), cause);
+            } else {
+                log.log(level, "SSL Problem {} ({} from {}, no stacktrace logged)", cause.getMessage(), channelType, remoteAddress);
+            }
+        }
+    }
+
+    /**
+     * Logs how often each aggregate failed since the last summary (if at all)
+     */
+    public void logSummary() {
+        final long now = System.nanoTime();
+        final long last = lastSummaryNanos.getAndSet(now);
+
+        final List<String> summary = new ArrayList<>();
+
+        for (final Map.Entry<Aggregate, LongAdder> entry : counts.entrySet()) {
+            final long count = entry.getValue().sumThenReset();
+
+            if (count > 0) {
+                summary.add(entry.getKey() + " x " + count);
+            } else {
+                //no failures for a whole interval, next failure is logged right away again
+                counts.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        if (!summary.isEmpty()) {
+            log.warn("SSL failures in the last {}: {}", TimeValue.timeValueNanos(now - last), summary);
+        }
+    }
+
+    @Override
+    public void close() {
+        final Cancellable scheduled = this.scheduled;
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+    }
+
+    static String getPrefix(final SocketAddress remoteAddress) {
+
+        if (!(remoteAddress instanceof InetSocketAddress) || ((InetSocketAddress) remoteAddress).getAddress() == null) {
+            return String.valueOf(remoteAddress);
+        }
+
+        final InetAddress address = ((InetSocketAddress) remoteAddress).getAddress();
+        final byte[] bytes = address.getAddress();
+
+        if (address instanceof Inet4Address) {
+            return (bytes[0] & 0xff) + "." + (bytes[1] & 0xff) + "." + (bytes[2] & 0xff) + ".0/24";
+        }
+
+        final StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < 8; i += 2) {
+            prefix.append(Integer.toHexString(((bytes[i] & 0xff) << 8) | (bytes[i + 1] & 0xff))).append(':');
+        }
+        return prefix.append(":/64").toString();
+    }
+
+    private static final class Aggregate {
+        private final String channelType;
+        private final String causeClass;
+        private final String remotePrefix;
+
+        private Aggregate(final String channelType, final String causeClass, final String remotePrefix) {
+            this.channelType = channelType;
+            this.causeClass = causeClass;
+            this.remotePrefix = remotePrefix;
+        }
+
+        @Override
+        public int hashCode() {
+            return (31 * channelType.hashCode() + causeClass.hashCode()) * 31 + remotePrefix.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Aggregate)) {
+                return false;
+            }
+            final Aggregate other = (Aggregate) obj;
+            return channelType.equals(other.channelType) && causeClass.equals(other.causeClass) && remotePrefix.equals(other.remotePrefix);
+        }
+
+        @Override
+        public String toString() {
+            return channelType + " " + causeClass + " " + remotePrefix;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.handler.ssl.SslHandler;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import javax.net.ssl.SSLEngine;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+
+/**
+ * Creates the {@link SslHandler}s for http or transport and applies the handler tuning settings.
+ * The defaults are the Netty defaults.
+ */
+public class SslHandlerFactory {
+
+    /**
+     * Allocator for the buffers of OpenSSL engines, by default the allocator Elasticsearch configured for the channel.
+     * The other allocators are created on first use only, so that unused ones do not reserve pool arenas.
+     */
+    public enum EngineAllocator {
+        CHANNEL(null),
+        POOLED_DIRECT(() -> new PooledByteBufAllocator(true)),
+        POOLED_HEAP(() -> new PooledByteBufAllocator(false)),
+        UNPOOLED_DIRECT(() -> new UnpooledByteBufAllocator(true)),
+        UNPOOLED_HEAP(() -> new UnpooledByteBufAllocator(false));
+
+        private final Supplier<ByteBufAllocator> factory;
+        private volatile ByteBufAllocator allocator;
+
+        private EngineAllocator(final Supplier<ByteBufAllocator> factory) {
+            this.factory = factory;
+        }
+
+        public static EngineAllocator parse(final String value) {
+            return EngineAllocator.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+
+        private ByteBufAllocator get(final Channel channel) {
+            if (factory == null) {
+                return channel.alloc();
+            }
+
+            ByteBufAllocator result = allocator;
+            if (result == null) {
+                synchronized (this) {
+                    result = allocator;
+                    if (result == null) {
+                        allocator = result = factory.get();
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    public static final TimeValue DEFAULT_HANDSHAKE_TIMEOUT = TimeValue.timeValueSeconds(10);
+    public static final TimeValue DEFAULT_CLOSE_NOTIFY_FLUSH_TIMEOUT = TimeValue.timeValueSeconds(3);
+    public static final TimeValue DEFAULT_CLOSE_NOTIFY_READ_TIMEOUT = TimeValue.timeValueMillis(0);
+    public static final ByteSizeValue DEFAULT_WRAP_DATA_SIZE = new ByteSizeValue(16, ByteSizeUnit.KB);
+
+    private final long handshakeTimeoutMillis;
+    private final long closeNotifyFlushTimeoutMillis;
+    private final long closeNotifyReadTimeoutMillis;
+    private final int wrapDataSize;
+    private final EngineAllocator engineAllocator;
+
+    public SslHandlerFactory(final Settings settings, final boolean http) {
+        if (http) {
+            handshakeTimeoutMillis = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_HANDSHAKE_TIMEOUT, DEFAULT_HANDSHAKE_TIMEOUT).millis();
+            closeNotifyFlushTimeoutMillis = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CLOSE_NOTIFY_FLUSH_TIMEOUT, DEFAULT_CLOSE_NOTIFY_FLUSH_TIMEOUT).millis();
+            closeNotifyReadTimeoutMillis = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CLOSE_NOTIFY_READ_TIMEOUT, DEFAULT_CLOSE_NOTIFY_READ_TIMEOUT).millis();
+            wrapDataSize = settings.getAsBytesSize(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_WRAP_DATA_SIZE, DEFAULT_WRAP_DATA_SIZE).bytesAsInt();
+            engineAllocator = EngineAllocator.parse(settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ENGINE_ALLOCATOR, "channel"));
+        } else {
+            handshakeTimeoutMillis = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_HANDSHAKE_TIMEOUT, DEFAULT_HANDSHAKE_TIMEOUT).millis();
+            closeNotifyFlushTimeoutMillis = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_CLOSE_NOTIFY_FLUSH_TIMEOUT, DEFAULT_CLOSE_NOTIFY_FLUSH_TIMEOUT).millis();
+            closeNotifyReadTimeoutMillis = settings.getAsTime(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_CLOSE_NOTIFY_READ_TIMEOUT, DEFAULT_CLOSE_NOTIFY_READ_TIMEOUT).millis();
+            wrapDataSize = settings.getAsBytesSize(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_WRAP_DATA_SIZE, DEFAULT_WRAP_DATA_SIZE).bytesAsInt();
+            engineAllocator = EngineAllocator.parse(settings.get(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_TRANSPORT_ENGINE_ALLOCATOR, "channel"));
+        }
+    }
+
+    public SslHandler create(final SSLEngine engine) {
+        final SslHandler sslHandler = new SslHandler(engine);
+        configure(sslHandler);
+        return sslHandler;
+    }
+
+    public void configure(final SslHandler sslHandler) {
+        sslHandler.setHandshakeTimeoutMillis(handshakeTimeoutMillis);
+        sslHandler.setCloseNotifyFlushTimeoutMillis(closeNotifyFlushTimeoutMillis);
+        sslHandler.setCloseNotifyReadTimeoutMillis(closeNotifyReadTimeoutMillis);
+        sslHandler.setWrapDataSize(wrapDataSize);
+    }
+
+    /**
+     * @return the allocator to pass to the SSLEngine of the given channel
+     */
+    public ByteBufAllocator getEngineAllocator(final Channel channel) {
+        return engineAllocator.get(channel);
+    }
+
+    public int getWrapDataSize() {
+        return wrapDataSize;
+    }
+}
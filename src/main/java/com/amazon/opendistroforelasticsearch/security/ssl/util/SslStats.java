@@ -0,0 +1,131 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of TLS related events which are too frequent or too uninteresting to be logged one by one.
+ * Reported by {@code /_opendistro/_security/sslinfo}.
+ * <p>
+ * Every plugin instance owns one and hands it to its transports, so several nodes in one JVM
+ * (like in integration tests) do not mix up their counts.
+ */
+public class SslStats {
+
+    private final LongAdder httpPlaintextRejected = new LongAdder();
+    private final LongAdder transportPlaintextRejected = new LongAdder();
+    private final LongAdder httpBlocked = new LongAdder();
+    private final LongAdder transportBlocked = new LongAdder();
+    private final LongAdder engineMemory = new LongAdder();
+    private final LongAdder httpBreakerRejected = new LongAdder();
+    private final LongAdder transportBreakerRejected = new LongAdder();
+    private final LongAdder hostnameLookups = new LongAdder();
+    private final LongAdder hostnameLookupNanos = new LongAdder();
+    private final LongAdder hostnameCacheHits = new LongAdder();
+    private final ConcurrentMap<String, Long> transportWarmupMillis = new ConcurrentHashMap<>();
+
+    /**
+     * Called whenever a connection is closed because the peer does not speak TLS
+     */
+    public void onPlaintextRejected(final boolean http) {
+        (http ? httpPlaintextRejected : transportPlaintextRejected).increment();
+    }
+
+    public long getPlaintextRejectedCount(final boolean http) {
+        return (http ? httpPlaintextRejected : transportPlaintextRejected).sum();
+    }
+
+    /**
+     * Called whenever a new connection is rejected because its address is blocked by the {@link HandshakeFailureTracker}
+     */
+    public void onConnectionBlocked(final boolean http) {
+        (http ? httpBlocked : transportBlocked).increment();
+    }
+
+    public long getBlockedConnectionCount(final boolean http) {
+        return (http ? httpBlocked : transportBlocked).sum();
+    }
+
+    /**
+     * Called when the estimated engine memory of a channel is charged to (positive) or released from (negative) the circuit breaker
+     */
+    public void onEngineMemoryCharged(final long bytes) {
+        engineMemory.add(bytes);
+    }
+
+    public long getEngineMemory() {
+        return engineMemory.sum();
+    }
+
+    /**
+     * Called when a connection was refused because the circuit breaker tripped
+     */
+    public void onBreakerRejected(final boolean http) {
+        (http ? httpBreakerRejected : transportBreakerRejected).increment();
+    }
+
+    public long getBreakerRejectedCount(final boolean http) {
+        return (http ? httpBreakerRejected : transportBreakerRejected).sum();
+    }
+
+    /**
+     * Called after a reverse lookup of a peer hostname
+     */
+    public void onHostnameLookup(final long nanos) {
+        hostnameLookups.increment();
+        hostnameLookupNanos.add(nanos);
+    }
+
+    public void onHostnameCacheHit() {
+        hostnameCacheHits.increment();
+    }
+
+    public long getHostnameLookupCount() {
+        return hostnameLookups.sum();
+    }
+
+    public long getHostnameLookupNanos() {
+        return hostnameLookupNanos.sum();
+    }
+
+    public long getHostnameCacheHitCount() {
+        return hostnameCacheHits.sum();
+    }
+
+    /**
+     * Called after a TLS warm-up connection to a node was established
+     */
+    public void onTransportWarmup(final String nodeId, final long millis) {
+        transportWarmupMillis.put(nodeId, millis);
+    }
+
+    public void removeTransportWarmup(final String nodeId) {
+        transportWarmupMillis.remove(nodeId);
+    }
+
+    /**
+     * @return node id to the duration of the last warm-up of the node in milliseconds
+     */
+    public Map<String, Long> getTransportWarmupMillis() {
+        return Collections.unmodifiableMap(transportWarmupMillis);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CapabilityProbeCache;
+
+public class CapabilityProbeCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndLoad() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve(CapabilityProbeCache.FILE_NAME);
+        final CapabilityProbeCache cache = new CapabilityProbeCache(file, Arrays.asList("jvm", "openssl", "ciphers"));
+
+        Assert.assertNull(cache.load());
+
+        final Map<String, List<String>> probes = new HashMap<>();
+        probes.put("jdk.ciphers", Arrays.asList("TLS_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256"));
+        probes.put("openssl.http.ciphers", Collections.emptyList());
+        cache.store(probes);
+
+        Assert.assertEquals(probes, new CapabilityProbeCache(file, Arrays.asList("jvm", "openssl", "ciphers")).load());
+    }
+
+    @Test
+    public void testOutdatedKey() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve(CapabilityProbeCache.FILE_NAME);
+        new CapabilityProbeCache(file, Arrays.asList("jvm", "openssl", "ciphers"))
+                .store(Collections.singletonMap("jdk.protocols", Arrays.asList("TLSv1.2")));
+
+        Assert.assertNull(new CapabilityProbeCache(file, Arrays.asList("other jvm", "openssl", "ciphers")).load());
+        //parts must not be simply concatenated
+        Assert.assertNull(new CapabilityProbeCache(file, Arrays.asList("jvmopenssl", "", "ciphers")).load());
+    }
+
+    @Test
+    public void testCorruptFile() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve(CapabilityProbeCache.FILE_NAME);
+        Files.write(file, "key=\\u12".getBytes(StandardCharsets.ISO_8859_1));
+
+        Assert.assertNull(new CapabilityProbeCache(file, Arrays.asList("jvm")).load());
+    }
+}
@@ -35,6 +35,8 @@ import java.io.FileInputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.cert.CRL;
 import java.security.cert.CertPathBuilderException;
 import java.security.cert.Certificate;
@@ -42,21 +44,31 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateRevokedException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.common.settings.Settings;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.amazon.opendistroforelasticsearch.security.ssl.util.CertificateValidator;
 import com.amazon.opendistroforelasticsearch.security.ssl.util.ExceptionUtils;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLRequestHelper;
 
 public class CertificateValidatorTest {
     
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+    
     public static final Date CRL_DATE = new Date(1525546426000L);
     protected final Logger log = LogManager.getLogger(this.getClass());
     
@@ -137,6 +149,112 @@ public class CertificateValidatorTest {
         }
     }
     
+    @Test
+    public void testFastPathMatchesPkix() throws Exception {
+        
+        File staticCrl = getAbsoluteFilePathFromClassPath("crl/revoked.crl");
+        Collection<? extends CRL> crls = null;
+        try(FileInputStream crlin = new FileInputStream(staticCrl)) {
+            crls = CertificateFactory.getInstance("X.509").generateCRLs(crlin);
+        }
+        
+        Collection<? extends Certificate> rootCas;
+        final File trustedCas = getAbsoluteFilePathFromClassPath("chain-ca.pem");
+        try(FileInputStream trin = new FileInputStream(trustedCas)) {
+            rootCas =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        Collection<? extends Certificate> validCerts;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("node-0.crt.pem"))) {
+            validCerts =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        Collection<? extends Certificate> revokedCerts;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/revoked.crt.pem"))) {
+            revokedCerts =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        for(boolean fastPath: new boolean[] {true, false}) {
+            CertificateValidator validator = new CertificateValidator(rootCas.toArray(new X509Certificate[0]), crls);
+            validator.setFastPath(fastPath);
+            validator.setDate(CRL_DATE);
+            
+            try {
+                validator.validate(validCerts.toArray(new X509Certificate[0]));
+            } catch (CertificateException e) {
+                Assert.fail(ExceptionsHelper.stackTrace(ExceptionUtils.getRootCause(e)));
+            }
+            
+            //the outcome must not only match, the fast path must actually have been taken
+            Assert.assertEquals(fastPath ? 1 : 0, validator.getFastPathCount());
+            
+            try {
+                validator.validate(revokedCerts.toArray(new X509Certificate[0]));
+                Assert.fail();
+            } catch (CertificateException e) {
+                Assert.assertTrue(ExceptionUtils.getRootCause(e) instanceof CertificateRevokedException);
+            }
+            
+            //expired at validation time
+            validator.setDate(new Date(0));
+            try {
+                validator.validate(validCerts.toArray(new X509Certificate[0]));
+                Assert.fail();
+            } catch (CertificateException e) {
+                //expected
+            }
+        }
+    }
+    
+    @Test
+    public void testFastPathDefersUnsupportedCrls() throws Exception {
+        
+        Collection<? extends Certificate> rootCas;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/fastpath/ca.pem"))) {
+            rootCas =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        //revoked on a CRL with an issuing distribution point, next to a complete CRL which does not list it
+        assertFastPathDefers(rootCas, "crl/fastpath/partitioned.crt.pem", "crl/fastpath/partitioned.crl", "crl/fastpath/empty.crl");
+        //revoked as of 2045
+        assertFastPathDefers(rootCas, "crl/fastpath/future.crt.pem", "crl/fastpath/future.crl");
+    }
+    
+    private void assertFastPathDefers(Collection<? extends Certificate> rootCas, String cert, String... crlFiles) throws Exception {
+        
+        final List<CRL> crls = new ArrayList<>();
+        for(String crlFile: crlFiles) {
+            try(FileInputStream crlin = new FileInputStream(getAbsoluteFilePathFromClassPath(crlFile))) {
+                crls.addAll(CertificateFactory.getInstance("X.509").generateCRLs(crlin));
+            }
+        }
+        
+        Collection<? extends Certificate> certsToValidate;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath(cert))) {
+            certsToValidate =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        final Boolean[] valid = new Boolean[2];
+        
+        for(int i = 0; i < 2; i++) {
+            final boolean fastPath = i == 0;
+            CertificateValidator validator = new CertificateValidator(rootCas.toArray(new X509Certificate[0]), crls);
+            validator.setFastPath(fastPath);
+            
+            try {
+                validator.validate(certsToValidate.toArray(new X509Certificate[0]));
+                valid[i] = true;
+            } catch (CertificateException e) {
+                valid[i] = false;
+            }
+            
+            //left to PKIX, so the outcome is the same by construction
+            Assert.assertEquals(0, validator.getFastPathCount());
+        }
+        
+        Assert.assertEquals(valid[1], valid[0]);
+    }
+    
     @Test
     public void testNoValidationPossible() throws Exception {
 
@@ -203,6 +321,30 @@ public class CertificateValidatorTest {
         }
     }
 
+    @Test
+    public void testValidatorReloadedOnCrlFileChange() throws Exception {
+        
+        final File crl = folder.newFile("revoked.crl");
+        Files.copy(getAbsoluteFilePathFromClassPath("crl/revoked.crl").toPath(), crl.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        
+        final Settings settings = Settings.builder()
+                .put("path.home", folder.getRoot().getAbsolutePath())
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_PEMTRUSTEDCAS_FILEPATH, getAbsoluteFilePathFromClassPath("chain-ca.pem").getAbsolutePath())
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_CRL_FILE, crl.getAbsolutePath())
+                .build();
+        
+        final CertificateValidator validator = SSLRequestHelper.getValidator(settings, folder.getRoot().toPath());
+        Assert.assertSame(validator, SSLRequestHelper.getValidator(settings, folder.getRoot().toPath()));
+        
+        //CRL file rotated
+        Assert.assertTrue(crl.setLastModified(crl.lastModified() - 60000));
+        
+        final CertificateValidator reloaded = SSLRequestHelper.getValidator(settings, folder.getRoot().toPath());
+        Assert.assertNotSame(validator, reloaded);
+        Assert.assertEquals(1, reloaded.getCrls().size());
+        Assert.assertSame(reloaded, SSLRequestHelper.getValidator(settings, folder.getRoot().toPath()));
+    }
+
     public File getAbsoluteFilePathFromClassPath(final String fileNameFromClasspath) {
         File file = null;
         final URL fileUrl = AbstractUnitTest.class.getClassLoader().getResource(fileNameFromClasspath);
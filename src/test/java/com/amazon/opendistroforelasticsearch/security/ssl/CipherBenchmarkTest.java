@@ -0,0 +1,95 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CipherBenchmark;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CipherBenchmark.Family;
+
+public class CipherBenchmarkTest {
+
+    @Test
+    public void testReorder() {
+        final List<String> ciphers = Arrays.asList("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256",
+                "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256", "TLS_AES_128_GCM_SHA256", "TLS_CHACHA20_POLY1305_SHA256");
+
+        Assert.assertEquals(Arrays.asList("TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256", "TLS_CHACHA20_POLY1305_SHA256",
+                "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256", "TLS_AES_128_GCM_SHA256"),
+                CipherBenchmark.reorder(ciphers, Family.CHACHA20_POLY1305));
+
+        Assert.assertEquals(Arrays.asList("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_AES_128_GCM_SHA256",
+                "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256", "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256", "TLS_CHACHA20_POLY1305_SHA256"),
+                CipherBenchmark.reorder(ciphers, Family.AES_GCM));
+    }
+
+    @Test
+    public void testJdkBenchmark() {
+        final CipherBenchmark.Result result = CipherBenchmark.run(SslProvider.JDK,
+                () -> SslContextBuilder.forServer(getAbsoluteFilePathFromClassPath("node-0.crt.pem"),
+                        getAbsoluteFilePathFromClassPath("node-0.key.pem")));
+
+        //every JDK supports AES-GCM, ChaCha20 only with Java 12+
+        Assert.assertTrue(result.getThroughput().get(Family.AES_GCM) > 0);
+        if (result.getThroughput().size() < Family.values().length) {
+            Assert.assertNull(result.getPreferred());
+        }
+    }
+
+    @Test
+    public void testPreferredNeedsEveryFamilyAndClearMargin() {
+        final Map<Family, Long> throughput = new EnumMap<>(Family.class);
+
+        throughput.put(Family.AES_GCM, 1000L);
+        Assert.assertNull(new CipherBenchmark.Result(throughput).getPreferred());
+
+        throughput.put(Family.CHACHA20_POLY1305, 950L);
+        Assert.assertNull(new CipherBenchmark.Result(throughput).getPreferred());
+
+        throughput.put(Family.CHACHA20_POLY1305, 1200L);
+        Assert.assertEquals(Family.CHACHA20_POLY1305, new CipherBenchmark.Result(throughput).getPreferred());
+
+        throughput.put(Family.CHACHA20_POLY1305, 400L);
+        Assert.assertEquals(Family.AES_GCM, new CipherBenchmark.Result(throughput).getPreferred());
+    }
+
+    private File getAbsoluteFilePathFromClassPath(final String fileNameFromClasspath) {
+        final URL fileUrl = CipherBenchmarkTest.class.getClassLoader().getResource(fileNameFromClasspath);
+        if (fileUrl == null) {
+            return null;
+        }
+
+        try {
+            return new File(URLDecoder.decode(fileUrl.getFile(), "UTF-8"));
+        } catch (final UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+}
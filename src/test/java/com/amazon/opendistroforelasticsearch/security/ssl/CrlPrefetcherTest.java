@@ -0,0 +1,266 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.security.cert.CRL;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateRevokedException;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CertificateExtensions;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CertificateValidator;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.CrlPrefetcher;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.ExceptionUtils;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.RevocationStore;
+import com.sun.net.httpserver.HttpServer;
+
+public class CrlPrefetcherTest {
+    
+    private static final String ETAG = "\"crl-1\"";
+    
+    private HttpServer crlServer;
+    private ThreadPool threadPool;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger conditionalRequests = new AtomicInteger();
+    private final AtomicInteger failedRequests = new AtomicInteger();
+    
+    @Before
+    public void setup() throws Exception {
+        final byte[] crl = Files.readAllBytes(getAbsoluteFilePathFromClassPath("crl/revoked.crl").toPath());
+        
+        crlServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        crlServer.createContext("/revoked.crl", exchange -> {
+            requests.incrementAndGet();
+            
+            if(ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                conditionalRequests.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            exchange.sendResponseHeaders(200, crl.length);
+            try(OutputStream out = exchange.getResponseBody()) {
+                out.write(crl);
+            }
+        });
+        crlServer.createContext("/unavailable.crl", exchange -> {
+            failedRequests.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        crlServer.start();
+        
+        threadPool = new ThreadPool(Settings.builder().put("node.name", "crl_prefetcher_test").build());
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        if(crlServer != null) {
+            crlServer.stop(0);
+        }
+        
+        if(threadPool != null) {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+    
+    @Test
+    public void testConditionalRefresh() throws Exception {
+        
+        final URI distributionPoint = URI.create("http://" + crlServer.getAddress().getHostString() + ":" + crlServer.getAddress().getPort() + "/revoked.crl");
+        final RevocationStore store = new RevocationStore();
+        
+        //a certificate with this distribution point was seen while validating (cache only)
+        Assert.assertTrue(store.getCrls(Collections.singletonList(distributionPoint), null, false).isEmpty());
+        Assert.assertEquals(0, requests.get());
+        
+        try(CrlPrefetcher prefetcher = new CrlPrefetcher(store, Collections.emptyList(), threadPool, TimeValue.timeValueHours(1))) {
+            prefetcher.refresh();
+            Assert.assertEquals(1, requests.get());
+            Assert.assertNotNull(store.get(distributionPoint));
+            
+            prefetcher.refresh();
+            Assert.assertEquals(2, requests.get());
+            Assert.assertEquals(1, conditionalRequests.get());
+            Assert.assertEquals(1, store.getNotModifiedCount());
+            Assert.assertNotNull(store.get(distributionPoint));
+        }
+    }
+    
+    @Test
+    public void testValidationUsesCachedCrlsOnly() throws Exception {
+        
+        Collection<? extends Certificate> rootCas;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("chain-ca.pem"))) {
+            rootCas =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        Collection<? extends Certificate> certsToValidate;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/revoked.crt.pem"))) {
+            certsToValidate =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        Collection<? extends CRL> crls;
+        try(FileInputStream crlin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/revoked.crl"))) {
+            crls = CertificateFactory.getInstance("X.509").generateCRLs(crlin);
+        }
+        
+        final X509Certificate[] chain = certsToValidate.toArray(new X509Certificate[0]);
+        final List<URI> distributionPoints = CertificateExtensions.getCrlDistributionPoints(chain[0]);
+        Assert.assertEquals(1, distributionPoints.size());
+        
+        final RevocationStore store = new RevocationStore();
+        final CertificateValidator validator = new CertificateValidator(rootCas.toArray(new X509Certificate[0]), Collections.emptyList());
+        validator.setRevocationStore(store);
+        validator.setEnableCRLDP(true);
+        validator.setEnableOCSP(false);
+        validator.setFetchCrlsOnMiss(false);
+        validator.setDate(CertificateValidatorTest.CRL_DATE);
+        
+        //nothing cached, no revocation information available
+        try {
+            validator.validate(chain);
+            Assert.fail();
+        } catch (CertificateException e) {
+            Assert.assertFalse(ExceptionUtils.getRootCause(e) instanceof CertificateRevokedException);
+        }
+        
+        Assert.assertEquals(0, store.getFetchCount());
+        Assert.assertTrue(store.getKnownDistributionPoints().contains(distributionPoints.get(0)));
+        
+        //what the prefetcher would have downloaded
+        store.put(distributionPoints.get(0), (X509CRL) crls.iterator().next());
+        
+        try {
+            validator.validate(chain);
+            Assert.fail();
+        } catch (CertificateException e) {
+            Assert.assertTrue(ExceptionUtils.getRootCause(e) instanceof CertificateRevokedException);
+        }
+        
+        Assert.assertEquals(0, store.getFetchCount());
+    }
+    
+    @Test
+    public void testUntrustedChainDistributionPointsAreIgnored() throws Exception {
+        
+        //not the issuer of the presented chain
+        Collection<? extends Certificate> rootCas;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/fastpath/ca.pem"))) {
+            rootCas =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        Collection<? extends Certificate> certsToValidate;
+        try(FileInputStream trin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/revoked.crt.pem"))) {
+            certsToValidate =  (Collection<? extends Certificate>) CertificateFactory.getInstance("X.509").generateCertificates(trin);
+        }
+        
+        for(boolean fastPath: new boolean[] {true, false}) {
+            final RevocationStore store = new RevocationStore();
+            final CertificateValidator validator = new CertificateValidator(rootCas.toArray(new X509Certificate[0]), Collections.emptyList());
+            validator.setRevocationStore(store);
+            validator.setEnableCRLDP(true);
+            validator.setEnableOCSP(false);
+            validator.setFastPath(fastPath);
+            validator.setDate(CertificateValidatorTest.CRL_DATE);
+            
+            try {
+                validator.validate(certsToValidate.toArray(new X509Certificate[0]));
+                Assert.fail();
+            } catch (CertificateException e) {
+                //expected
+            }
+            
+            //the distribution point of a chain without a trusted certificate is never contacted
+            Assert.assertTrue(store.getKnownDistributionPoints().isEmpty());
+            Assert.assertEquals(0, store.getFetchCount());
+        }
+    }
+    
+    @Test
+    public void testFailedFetchBacksOff() throws Exception {
+        
+        final X509CRL crl;
+        try(FileInputStream crlin = new FileInputStream(getAbsoluteFilePathFromClassPath("crl/revoked.crl"))) {
+            crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(crlin);
+        }
+        
+        final URI distributionPoint = URI.create("http://" + crlServer.getAddress().getHostString() + ":" + crlServer.getAddress().getPort() + "/unavailable.crl");
+        final RevocationStore store = new RevocationStore();
+        store.put(distributionPoint, crl);
+        
+        //the cached CRL is outdated at this date
+        final Date date = new Date(crl.getNextUpdate().getTime() + 1);
+        
+        Assert.assertEquals(Collections.singletonList(crl), store.getCrls(Collections.singletonList(distributionPoint), date, true));
+        Assert.assertEquals(1, failedRequests.get());
+        
+        //within the retry delay the outdated CRL is served without asking the distribution point again
+        Assert.assertEquals(Collections.singletonList(crl), store.getCrls(Collections.singletonList(distributionPoint), date, true));
+        Assert.assertEquals(1, failedRequests.get());
+        Assert.assertEquals(1, store.getFetchCount());
+        
+        store.setRetryDelayMillis(0);
+        store.clear();
+        store.put(distributionPoint, crl);
+        
+        store.getCrls(Collections.singletonList(distributionPoint), date, true);
+        store.getCrls(Collections.singletonList(distributionPoint), date, true);
+        Assert.assertEquals(3, failedRequests.get());
+    }
+    
+    private File getAbsoluteFilePathFromClassPath(final String fileNameFromClasspath) {
+        final URL fileUrl = CrlPrefetcherTest.class.getClassLoader().getResource(fileNameFromClasspath);
+        if (fileUrl == null) {
+            return null;
+        }
+        
+        try {
+            return new File(URLDecoder.decode(fileUrl.getFile(), "UTF-8"));
+        } catch (final UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.http.netty.DynamicRecordSizeHandler;
+
+public class DynamicRecordSizeHandlerTest {
+
+    private static final int SMALL = 1024;
+    private static final int FULL = 16 * 1024;
+    private static final int THRESHOLD = 4096;
+
+    //bytes and wrap size of each write which reached the SslHandler
+    private final List<int[]> writes = new ArrayList<>();
+    private SslHandler sslHandler;
+
+    @Before
+    public void setup() throws Exception {
+        //only the wrap size is of interest, the handler itself is not part of the pipeline
+        final SSLEngine engine = SSLContext.getDefault().createSSLEngine();
+        engine.setUseClientMode(false);
+        sslHandler = new SslHandler(engine);
+    }
+
+    @Test
+    public void testSwitchToFullRecordsAtThreshold() throws Exception {
+        final EmbeddedChannel channel = newChannel(TimeUnit.HOURS.toNanos(1));
+        Assert.assertEquals(SMALL, sslHandler.getWrapDataSize());
+
+        Assert.assertTrue(channel.writeAndFlush(buffer(1000)).isSuccess());
+        Assert.assertEquals(SMALL, sslHandler.getWrapDataSize());
+
+        //crosses the threshold, the head is written (and flushed) with small records
+        final ChannelFuture crossing = channel.writeAndFlush(buffer(5000));
+        Assert.assertTrue(crossing.isSuccess());
+        Assert.assertEquals(FULL, sslHandler.getWrapDataSize());
+
+        Assert.assertTrue(channel.writeAndFlush(buffer(100)).isSuccess());
+
+        Assert.assertEquals(4, writes.size());
+        assertWrite(1000, SMALL, writes.get(0));
+        assertWrite(THRESHOLD - 1000, SMALL, writes.get(1));
+        assertWrite(5000 - (THRESHOLD - 1000), FULL, writes.get(2));
+        assertWrite(100, FULL, writes.get(3));
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testCombinedPromiseCompletesWithLastPart() throws Exception {
+        final EmbeddedChannel channel = newChannel(TimeUnit.HOURS.toNanos(1));
+
+        //not flushed yet, only the part below the threshold is flushed by the handler itself
+        final ChannelFuture crossing = channel.write(buffer(THRESHOLD + 10));
+        Assert.assertFalse(crossing.isDone());
+
+        channel.flush();
+        Assert.assertTrue(crossing.isSuccess());
+
+        Assert.assertEquals(2, writes.size());
+        assertWrite(THRESHOLD, SMALL, writes.get(0));
+        assertWrite(10, FULL, writes.get(1));
+
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testResetAfterIdle() throws Exception {
+        final EmbeddedChannel channel = newChannel(TimeUnit.MILLISECONDS.toNanos(50));
+
+        Assert.assertTrue(channel.writeAndFlush(buffer(THRESHOLD)).isSuccess());
+        Assert.assertEquals(FULL, sslHandler.getWrapDataSize());
+
+        Thread.sleep(100);
+
+        Assert.assertTrue(channel.writeAndFlush(buffer(100)).isSuccess());
+        Assert.assertEquals(SMALL, sslHandler.getWrapDataSize());
+        assertWrite(100, SMALL, writes.get(writes.size() - 1));
+
+        channel.finishAndReleaseAll();
+    }
+
+    private EmbeddedChannel newChannel(final long idleNanos) {
+        final EmbeddedChannel channel = new EmbeddedChannel();
+        channel.pipeline().addLast("ssl_http", new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+                writes.add(new int[] { ((ByteBuf) msg).readableBytes(), sslHandler.getWrapDataSize() });
+                ctx.write(msg, promise);
+            }
+        });
+        channel.pipeline().addLast("dynamic_record_size", new DynamicRecordSizeHandler(sslHandler, SMALL, FULL, THRESHOLD, idleNanos));
+        return channel;
+    }
+
+    private static ByteBuf buffer(final int size) {
+        return Unpooled.wrappedBuffer(new byte[size]);
+    }
+
+    private static void assertWrite(final int bytes, final int wrapDataSize, final int[] write) {
+        Assert.assertEquals(bytes, write[0]);
+        Assert.assertEquals(wrapDataSize, write[1]);
+    }
+}
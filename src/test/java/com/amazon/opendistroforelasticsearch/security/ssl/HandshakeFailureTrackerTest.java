@@ -0,0 +1,108 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import java.net.InetSocketAddress;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.HandshakeFailureTracker;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+
+public class HandshakeFailureTrackerTest {
+
+    @Test
+    public void testBlocking() throws Exception {
+        final Settings settings = Settings.builder()
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_MAX_FAILURES, 3)
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_BLOCK_DURATION, "1h")
+                .putList(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_ALLOWLIST, "10.0.0.0/8", "2001:db8::1")
+                .build();
+
+        final HandshakeFailureTracker tracker = new HandshakeFailureTracker(settings);
+        final InetSocketAddress offender = new InetSocketAddress("192.0.2.1", 4711);
+        final InetSocketAddress node = new InetSocketAddress("10.1.2.3", 9300);
+        final InetSocketAddress ipv6Node = new InetSocketAddress("2001:db8::1", 9300);
+
+        for (int i = 0; i < 2; i++) {
+            tracker.onFailure(offender);
+        }
+        Assert.assertFalse(tracker.isBlocked(offender));
+
+        tracker.onFailure(offender);
+        Assert.assertTrue(tracker.isBlocked(offender));
+        //any source port
+        Assert.assertTrue(tracker.isBlocked(new InetSocketAddress("192.0.2.1", 4712)));
+        Assert.assertFalse(tracker.isBlocked(new InetSocketAddress("192.0.2.2", 4711)));
+        Assert.assertEquals(1, tracker.getBlockedAddressCount());
+
+        for (int i = 0; i < 10; i++) {
+            tracker.onFailure(node);
+            tracker.onFailure(ipv6Node);
+        }
+        Assert.assertFalse(tracker.isBlocked(node));
+        Assert.assertFalse(tracker.isBlocked(ipv6Node));
+    }
+
+    @Test
+    public void testConnectedClusterNodeIsAllowed() throws Exception {
+        final Settings settings = Settings.builder()
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_MAX_FAILURES, 2)
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_BLOCK_DURATION, "1h")
+                .build();
+
+        final HandshakeFailureTracker tracker = new HandshakeFailureTracker(settings);
+        final InetSocketAddress node = new InetSocketAddress("192.0.2.5", 9300);
+
+        tracker.onFailure(node);
+        tracker.onFailure(node);
+        Assert.assertTrue(tracker.isBlocked(node));
+
+        //this node connected to it, so it is a cluster node
+        tracker.allow(node);
+        Assert.assertFalse(tracker.isBlocked(new InetSocketAddress("192.0.2.5", 51234)));
+
+        for (int i = 0; i < 10; i++) {
+            tracker.onFailure(node);
+        }
+        Assert.assertFalse(tracker.isBlocked(node));
+        Assert.assertEquals(0, tracker.getBlockedAddressCount());
+    }
+
+    @Test
+    public void testDecay() throws Exception {
+        final Settings settings = Settings.builder()
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_MAX_FAILURES, 2)
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_DECAY, "50ms")
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HANDSHAKE_FAILURE_BLOCKING_BLOCK_DURATION, "100ms")
+                .build();
+
+        final HandshakeFailureTracker tracker = new HandshakeFailureTracker(settings);
+        final InetSocketAddress peer = new InetSocketAddress("192.0.2.1", 4711);
+
+        tracker.onFailure(peer);
+        Thread.sleep(100);
+        tracker.onFailure(peer);
+        Assert.assertFalse(tracker.isBlocked(peer));
+
+        tracker.onFailure(peer);
+        Assert.assertTrue(tracker.isBlocked(peer));
+        Thread.sleep(200);
+        Assert.assertFalse(tracker.isBlocked(peer));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.HostnameResolver;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
+
+public class HostnameResolverTest {
+
+    @Test
+    public void testResolveAndCache() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final SslStats stats = new SslStats();
+        final HostnameResolver resolver = new HostnameResolver(tasks::add, TimeValue.timeValueMinutes(1), stats);
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 }), 9300);
+
+        Assert.assertNull(resolver.getCached(address));
+
+        final CompletableFuture<String> first = resolver.resolve(address);
+        //concurrent lookups of the same address are shared
+        Assert.assertSame(first, resolver.resolve(new InetSocketAddress(address.getAddress(), 9301)));
+        Assert.assertFalse(first.isDone());
+        Assert.assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+
+        Assert.assertTrue(first.isDone());
+        Assert.assertNotNull(first.get());
+        //the lookup also set the hostname of the InetAddress, so a new one is needed to hit the cache
+        Assert.assertEquals(first.get(), resolver.getCached(new InetSocketAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 }), 9300)));
+        Assert.assertEquals(1, stats.getHostnameLookupCount());
+        Assert.assertEquals(1, stats.getHostnameCacheHitCount());
+        Assert.assertEquals(1, resolver.size());
+    }
+
+    @Test
+    public void testKnownHostnameNeedsNoLookup() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        final SslStats stats = new SslStats();
+        final HostnameResolver resolver = new HostnameResolver(tasks::add, TimeValue.timeValueMinutes(1), stats);
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress("node-1.example.com", new byte[] { 10, 0, 0, 1 }), 9300);
+
+        Assert.assertEquals("node-1.example.com", resolver.getCached(address));
+        Assert.assertEquals("node-1.example.com", resolver.resolve(address).get());
+        Assert.assertTrue(tasks.isEmpty());
+        Assert.assertEquals(0, stats.getHostnameLookupCount());
+    }
+
+    @Test
+    public void testNoCachingWithoutTtl() throws Exception {
+        final SslStats stats = new SslStats();
+        final HostnameResolver resolver = new HostnameResolver(Runnable::run, TimeValue.timeValueMillis(0), stats);
+        final InetSocketAddress address = new InetSocketAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 }), 9300);
+
+        Assert.assertNotNull(resolver.resolve(address).get());
+        Assert.assertNull(resolver.getCached(new InetSocketAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 }), 9300)));
+        Assert.assertEquals(0, resolver.size());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.PlaintextRejectionHandler;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.PlaintextRejectionHandler.Response;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
+
+public class PlaintextRejectionHandlerTest {
+
+    @Test
+    public void testTlsPassesThrough() throws Exception {
+        final SslStats stats = new SslStats();
+        final EmbeddedChannel channel = new EmbeddedChannel(new PlaintextRejectionHandler(true, Response.BAD_REQUEST, stats));
+
+        //handshake record header (TLS 1.0 record version, length 5) split over two reads
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x16, 0x03 }));
+        Assert.assertNull(channel.readInbound());
+        channel.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x01, 0x00, 0x05, 1, 2, 3, 4, 5 }));
+
+        final ByteBuf passed = channel.readInbound();
+        Assert.assertEquals(10, passed.readableBytes());
+        passed.release();
+        Assert.assertNull(channel.pipeline().get(PlaintextRejectionHandler.class));
+        Assert.assertTrue(channel.isOpen());
+        Assert.assertEquals(0, stats.getPlaintextRejectedCount(true));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void testHttpRedirect() throws Exception {
+        final SslStats stats = new SslStats();
+        final EmbeddedChannel channel = new EmbeddedChannel(new PlaintextRejectionHandler(true, Response.REDIRECT, stats));
+
+        channel.writeInbound(Unpooled.copiedBuffer("GET /_cat/nodes?v HTTP/1.1\r\nUser-Agent: test\r\nhost: node-0:9200\r\n\r\n",
+                StandardCharsets.US_ASCII));
+
+        final ByteBuf response = channel.readOutbound();
+        final String responseString = response.toString(StandardCharsets.US_ASCII);
+        response.release();
+        Assert.assertTrue(responseString, responseString.startsWith("HTTP/1.1 301 "));
+        Assert.assertTrue(responseString, responseString.contains("\r\nLocation: https://node-0:9200/_cat/nodes?v\r\n"));
+        Assert.assertNull(channel.readInbound());
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertEquals(1, stats.getPlaintextRejectedCount(true));
+        Assert.assertEquals(0, stats.getPlaintextRejectedCount(false));
+    }
+
+    @Test
+    public void testHttpRedirectWithoutHost() throws Exception {
+        final SslStats stats = new SslStats();
+        final EmbeddedChannel channel = new EmbeddedChannel(new PlaintextRejectionHandler(true, Response.REDIRECT, stats));
+
+        channel.writeInbound(Unpooled.copiedBuffer("GET / HTTP/1.0\r\n\r\n", StandardCharsets.US_ASCII));
+
+        final ByteBuf response = channel.readOutbound();
+        Assert.assertTrue(response.toString(StandardCharsets.US_ASCII).startsWith("HTTP/1.1 400 "));
+        response.release();
+        Assert.assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void testTransportPlaintext() throws Exception {
+        final SslStats stats = new SslStats();
+        final EmbeddedChannel channel = new EmbeddedChannel(new PlaintextRejectionHandler(false, Response.BAD_REQUEST, stats));
+
+        channel.writeInbound(Unpooled.copiedBuffer("GET / HTTP/1.1\r\n\r\n", StandardCharsets.US_ASCII));
+
+        //no http response on the transport port
+        Assert.assertNull(channel.readOutbound());
+        Assert.assertNull(channel.readInbound());
+        Assert.assertFalse(channel.isOpen());
+        Assert.assertEquals(1, stats.getPlaintextRejectedCount(false));
+    }
+}
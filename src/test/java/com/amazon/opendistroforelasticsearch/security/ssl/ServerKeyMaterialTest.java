@@ -0,0 +1,105 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.X509KeyManager;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.ServerKeyMaterial;
+
+public class ServerKeyMaterialTest {
+
+    @Test
+    public void testPemKeyMaterial() throws Exception {
+        final ServerKeyMaterial keyMaterial = new ServerKeyMaterial().add(getAbsoluteFilePathFromClassPath("node-0.key.pem"),
+                getAbsoluteFilePathFromClassPath("node-0.crt.pem"), null);
+
+        Assert.assertEquals(1, keyMaterial.size());
+        Assert.assertTrue(keyMaterial.hasKeyAlgorithm("RSA"));
+        Assert.assertFalse(keyMaterial.hasKeyAlgorithm("EC"));
+
+        final KeyManager[] keyManagers = keyMaterial.newKeyManagerFactory(false).getKeyManagers();
+        final X509KeyManager keyManager = (X509KeyManager) keyManagers[0];
+        final String alias = keyManager.chooseServerAlias("RSA", null, null);
+
+        Assert.assertNotNull(alias);
+        Assert.assertNull(keyManager.chooseServerAlias("EC", null, null));
+        Assert.assertEquals(ServerKeyMaterial.readCertificates(getAbsoluteFilePathFromClassPath("node-0.crt.pem"))[0],
+                keyManager.getCertificateChain(alias)[0]);
+    }
+
+    @Test
+    public void testEcdsaAndRsaKeyMaterial() throws Exception {
+        final ServerKeyMaterial keyMaterial = new ServerKeyMaterial()
+                .add(getAbsoluteFilePathFromClassPath("node-0-ec.key.pem"), getAbsoluteFilePathFromClassPath("node-0-ec.crt.pem"), null)
+                .add(getAbsoluteFilePathFromClassPath("node-0.key.pem"), getAbsoluteFilePathFromClassPath("node-0.crt.pem"), null);
+
+        Assert.assertEquals(2, keyMaterial.size());
+        Assert.assertTrue(keyMaterial.hasKeyAlgorithm("EC"));
+        Assert.assertTrue(keyMaterial.hasKeyAlgorithm("RSA"));
+
+        final X509KeyManager keyManager = (X509KeyManager) keyMaterial.newKeyManagerFactory(false).getKeyManagers()[0];
+        final String ecAlias = keyManager.chooseServerAlias("EC", null, null);
+        final String rsaAlias = keyManager.chooseServerAlias("RSA", null, null);
+
+        Assert.assertNotNull(ecAlias);
+        Assert.assertNotNull(rsaAlias);
+        Assert.assertNotEquals(ecAlias, rsaAlias);
+        Assert.assertEquals(ServerKeyMaterial.readCertificates(getAbsoluteFilePathFromClassPath("node-0-ec.crt.pem"))[0],
+                keyManager.getCertificateChain(ecAlias)[0]);
+        Assert.assertEquals(ServerKeyMaterial.readCertificates(getAbsoluteFilePathFromClassPath("node-0.crt.pem"))[0],
+                keyManager.getCertificateChain(rsaAlias)[0]);
+    }
+
+    @Test
+    public void testPreferEcdsa() {
+        final List<String> cipherSuites = Arrays.asList("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+                "TLS_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256", "TLS_AES_128_GCM_SHA256");
+
+        Assert.assertEquals(Arrays.asList("TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384", "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+                "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_RSA_WITH_AES_128_GCM_SHA256", "TLS_AES_128_GCM_SHA256"),
+                ServerKeyMaterial.preferEcdsa(cipherSuites));
+    }
+
+    @Test(expected = java.security.GeneralSecurityException.class)
+    public void testNoCertificates() throws Exception {
+        new ServerKeyMaterial().add(getAbsoluteFilePathFromClassPath("node-0.key.pem"), getAbsoluteFilePathFromClassPath("node-0.key.pem"), null);
+    }
+
+    private File getAbsoluteFilePathFromClassPath(final String fileNameFromClasspath) {
+        final URL fileUrl = ServerKeyMaterialTest.class.getClassLoader().getResource(fileNameFromClasspath);
+        if (fileUrl == null) {
+            return null;
+        }
+
+        try {
+            return new File(URLDecoder.decode(fileUrl.getFile(), "UTF-8"));
+        } catch (final UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SignatureCache;
+
+public class SignatureCacheTest {
+
+    @Test
+    public void testEcSignatureIsCached() throws Exception {
+        //self signed with an EC key
+        final X509Certificate cert = readCertificate("node-0-ec.crt.pem");
+        final SignatureCache cache = new SignatureCache(10);
+        
+        cache.verify(cert, cert.getPublicKey());
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.size());
+        
+        cache.verify(cert, cert.getPublicKey());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.size());
+    }
+    
+    @Test
+    public void testFailedVerificationIsNotCached() throws Exception {
+        final X509Certificate cert = readCertificate("node-0-ec.crt.pem");
+        final X509Certificate other = readCertificate("crl/revoked.crt.pem");
+        final SignatureCache cache = new SignatureCache(10);
+        
+        for(int i = 0; i < 2; i++) {
+            try {
+                cache.verify(other, cert.getPublicKey());
+                Assert.fail();
+            } catch (GeneralSecurityException e) {
+                //expected
+            }
+        }
+        
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testRsaSignatureIsCached() throws Exception {
+        //self signed with a 2048 bit RSA key
+        final X509Certificate cert = readCertificate("root-ca.pem");
+        final SignatureCache cache = new SignatureCache(10);
+        
+        cache.verify(cert, cert.getPublicKey());
+        cache.verify(cert, cert.getPublicKey());
+        
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.size());
+    }
+    
+    private X509Certificate readCertificate(final String fileNameFromClasspath) throws Exception {
+        try(FileInputStream in = new FileInputStream(getAbsoluteFilePathFromClassPath(fileNameFromClasspath))) {
+            return (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+        }
+    }
+    
+    private File getAbsoluteFilePathFromClassPath(final String fileNameFromClasspath) {
+        final URL fileUrl = SignatureCacheTest.class.getClassLoader().getResource(fileNameFromClasspath);
+        if (fileUrl == null) {
+            return null;
+        }
+        
+        try {
+            return new File(URLDecoder.decode(fileUrl.getFile(), "UTF-8"));
+        } catch (final UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLDecoder;
+
+import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.breaker.CircuitBreakingException;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.indices.breaker.CircuitBreakerService;
+import org.elasticsearch.indices.breaker.HierarchyCircuitBreakerService;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslEngineMemoryAccounting;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
+
+public class SslEngineMemoryAccountingTest {
+
+    private static final long BYTES_PER_ENGINE = 40 * 1024;
+
+    private final Settings settings = Settings.builder()
+            .put("network.breaker.inflight_requests.limit", "100kb")
+            .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_ENABLED, true)
+            .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_ENGINE_MEMORY_ACCOUNTING_BYTES_PER_ENGINE, "40kb")
+            .build();
+
+    private final CircuitBreakerService breakerService = new HierarchyCircuitBreakerService(settings,
+            new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+    private final CircuitBreaker breaker = breakerService.getBreaker(CircuitBreaker.IN_FLIGHT_REQUESTS);
+    private final SslStats stats = new SslStats();
+    private final SslEngineMemoryAccounting accounting = new SslEngineMemoryAccounting(settings, breakerService, stats);
+
+    @Test
+    public void testReserveAndRelease() throws Exception {
+        final EmbeddedChannel first = new EmbeddedChannel();
+        final EmbeddedChannel second = new EmbeddedChannel();
+
+        accounting.reserve(first);
+        accounting.reserve(second);
+        Assert.assertEquals(2 * BYTES_PER_ENGINE, breaker.getUsed());
+        Assert.assertEquals(2 * BYTES_PER_ENGINE, stats.getEngineMemory());
+
+        first.close();
+        Assert.assertEquals(BYTES_PER_ENGINE, breaker.getUsed());
+        Assert.assertEquals(BYTES_PER_ENGINE, stats.getEngineMemory());
+
+        second.close();
+        Assert.assertEquals(0, breaker.getUsed());
+        Assert.assertEquals(0, stats.getEngineMemory());
+    }
+
+    @Test
+    public void testTrip() throws Exception {
+        final EmbeddedChannel first = new EmbeddedChannel();
+        final EmbeddedChannel second = new EmbeddedChannel();
+        final EmbeddedChannel refused = new EmbeddedChannel();
+
+        accounting.reserve(first);
+        accounting.reserve(second);
+
+        try {
+            accounting.reserve(refused);
+            Assert.fail();
+        } catch (CircuitBreakingException e) {
+            //expected, nothing is charged for the refused channel
+        }
+
+        Assert.assertEquals(1, breaker.getTrippedCount());
+        Assert.assertEquals(2 * BYTES_PER_ENGINE, breaker.getUsed());
+        Assert.assertEquals(2 * BYTES_PER_ENGINE, stats.getEngineMemory());
+
+        //closing the refused channel must not release anything
+        refused.close();
+        Assert.assertEquals(2 * BYTES_PER_ENGINE, breaker.getUsed());
+
+        //outbound channels are charged even above the limit
+        final EmbeddedChannel outbound = new EmbeddedChannel();
+        accounting.charge(outbound);
+        Assert.assertEquals(3 * BYTES_PER_ENGINE, breaker.getUsed());
+
+        first.close();
+        second.close();
+        outbound.close();
+        Assert.assertEquals(0, breaker.getUsed());
+        Assert.assertEquals(0, stats.getEngineMemory());
+    }
+
+    @Test
+    public void testReleasedAfterHandshake() throws Exception {
+        final SslContext serverContext = SslContextBuilder.forServer(getAbsoluteFilePathFromClassPath("node-0.crt.pem"),
+                getAbsoluteFilePathFromClassPath("node-0.key.pem")).sslProvider(SslProvider.JDK).build();
+        final SslContext clientContext = SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE)
+                .sslProvider(SslProvider.JDK).build();
+
+        final EmbeddedChannel server = new EmbeddedChannel();
+        accounting.reserve(server);
+        final SslHandler serverHandler = serverContext.newHandler(server.alloc());
+        server.pipeline().addLast(serverHandler);
+        accounting.releaseAfterHandshake(server, serverHandler);
+
+        final EmbeddedChannel client = new EmbeddedChannel(clientContext.newHandler(server.alloc()));
+        Assert.assertEquals(BYTES_PER_ENGINE, breaker.getUsed());
+
+        for (int i = 0; i < 100 && !serverHandler.handshakeFuture().isDone(); i++) {
+            ByteBuf buf;
+            while ((buf = client.readOutbound()) != null) {
+                server.writeInbound(buf);
+            }
+            while ((buf = server.readOutbound()) != null) {
+                client.writeInbound(buf);
+            }
+        }
+
+        Assert.assertTrue(serverHandler.handshakeFuture().isSuccess());
+
+        //the connection is still open, but no longer charged
+        Assert.assertTrue(server.isOpen());
+        Assert.assertEquals(0, breaker.getUsed());
+        Assert.assertEquals(0, stats.getEngineMemory());
+
+        //and not released twice
+        server.close();
+        client.close();
+        Assert.assertEquals(0, breaker.getUsed());
+        Assert.assertEquals(0, stats.getEngineMemory());
+    }
+
+    private File getAbsoluteFilePathFromClassPath(final String fileNameFromClasspath) {
+        final URL fileUrl = SslEngineMemoryAccountingTest.class.getClassLoader().getResource(fileNameFromClasspath);
+        if (fileUrl == null) {
+            return null;
+        }
+
+        try {
+            return new File(URLDecoder.decode(fileUrl.getFile(), "UTF-8"));
+        } catch (final UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import io.netty.handler.codec.DecoderException;
+import io.netty.handler.ssl.NotSslRecordException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.Logger;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslFailureReporter;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SslStats;
+
+public class SslFailureReporterTest {
+
+    private static final AtomicInteger LOGGER_ID = new AtomicInteger();
+
+    private final InetSocketAddress peer = new InetSocketAddress("192.0.2.1", 4711);
+    private final InetSocketAddress neighbour = new InetSocketAddress("192.0.2.200", 4711);
+    private final RecordingAppender appender = new RecordingAppender();
+    private final SslStats stats = new SslStats();
+    private Logger logger;
+    private ThreadPool threadPool;
+
+    @Before
+    public void setup() {
+        logger = (Logger) LogManager.getLogger(SslFailureReporterTest.class.getName() + "." + LOGGER_ID.incrementAndGet());
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        logger.removeAppender(appender);
+        appender.stop();
+
+        if (threadPool != null) {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testReportSslFailure() throws Exception {
+        final SslFailureReporter reporter = new SslFailureReporter(settings("0", 0, 0), logger, stats);
+
+        final Throwable plaintext = SslFailureReporter.unwrap(new DecoderException(new NotSslRecordException("not an SSL/TLS record")));
+        Assert.assertTrue(plaintext instanceof NotSslRecordException);
+        Assert.assertTrue(reporter.reportSslFailure(true, "http", plaintext, peer));
+        Assert.assertTrue(reporter.reportSslFailure(false, "transport", new SSLHandshakeException("unknown ca"), peer));
+        Assert.assertTrue(reporter.reportSslFailure(false, "transport client", new SSLException("bad record mac"), peer));
+
+        //not a TLS failure, left to the caller
+        Assert.assertFalse(reporter.reportSslFailure(false, "transport", new IOException("connection reset"), peer));
+
+        Assert.assertEquals(3, appender.events.size());
+        Assert.assertEquals(1, stats.getPlaintextRejectedCount(true));
+        Assert.assertEquals(0, stats.getPlaintextRejectedCount(false));
+    }
+
+    @Test
+    public void testAggregation() throws Exception {
+        final SslFailureReporter reporter = new SslFailureReporter(settings("1h", 0, 0), logger, stats);
+
+        for (int i = 0; i < 5; i++) {
+            reporter.report("http", new SSLException("bad certificate"), i % 2 == 0 ? peer : neighbour);
+        }
+        reporter.report("transport", new SSLException("bad certificate"), peer);
+
+        //first failure of each aggregate only, same /24 is one aggregate
+        Assert.assertEquals(2, appender.events.size());
+        Assert.assertEquals(Level.ERROR, appender.events.get(0).getLevel());
+        Assert.assertNull(appender.events.get(0).getThrown());
+
+        reporter.logSummary();
+        Assert.assertEquals(3, appender.events.size());
+        final LogEvent summary = appender.events.get(2);
+        Assert.assertEquals(Level.WARN, summary.getLevel());
+        Assert.assertTrue(summary.getMessage().getFormattedMessage(), summary.getMessage().getFormattedMessage().contains("http SSLException 192.0.2.0/24 x 5"));
+        Assert.assertTrue(summary.getMessage().getFormattedMessage(), summary.getMessage().getFormattedMessage().contains("transport SSLException 192.0.2.0/24 x 1"));
+
+        //nothing happened since the last summary, so nothing to report and the aggregates are dropped
+        reporter.logSummary();
+        Assert.assertEquals(3, appender.events.size());
+
+        reporter.report("http", new SSLException("bad certificate"), peer);
+        Assert.assertEquals(4, appender.events.size());
+    }
+
+    @Test
+    public void testStacktraceSampling() throws Exception {
+        final SslFailureReporter reporter = new SslFailureReporter(settings("1h", 3, 0), logger, stats);
+
+        for (int i = 0; i < 7; i++) {
+            reporter.report("http", new SSLException("bad certificate"), peer);
+        }
+
+        //1st, 3rd and 6th failure, all with stacktrace
+        Assert.assertEquals(3, appender.events.size());
+        for (final LogEvent event : appender.events) {
+            Assert.assertEquals(Level.ERROR, event.getLevel());
+            Assert.assertNotNull(event.getThrown());
+        }
+
+        appender.events.clear();
+
+        for (int i = 0; i < 7; i++) {
+            reporter.report("http", new NotSslRecordException("plaintext"), peer);
+        }
+
+        //plaintext peers are logged once on warn level without stacktrace
+        Assert.assertEquals(1, appender.events.size());
+        Assert.assertEquals(Level.WARN, appender.events.get(0).getLevel());
+        Assert.assertNull(appender.events.get(0).getThrown());
+    }
+
+    @Test
+    public void testNoAggregation() throws Exception {
+        final SslFailureReporter reporter = new SslFailureReporter(settings("0", 0, 0), logger, stats);
+
+        for (int i = 0; i < 3; i++) {
+            reporter.report("http", new SSLException("bad certificate"), peer);
+        }
+
+        Assert.assertEquals(3, appender.events.size());
+    }
+
+    @Test
+    public void testScheduledSummary() throws Exception {
+        threadPool = new ThreadPool(Settings.builder().put("node.name", "ssl_failure_reporter_test").build());
+
+        try (SslFailureReporter reporter = new SslFailureReporter(settings("100ms", 0, 0), logger, stats)) {
+            reporter.start(threadPool);
+
+            reporter.report("http", new SSLException("bad certificate"), peer);
+            reporter.report("http", new SSLException("bad certificate"), peer);
+            Assert.assertEquals(1, appender.events.size());
+
+            //summarized without any further failure
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (appender.events.size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            Assert.assertEquals(2, appender.events.size());
+            Assert.assertTrue(appender.events.get(1).getMessage().getFormattedMessage().contains("http SSLException 192.0.2.0/24 x 2"));
+        }
+    }
+
+    private static Settings settings(final String summaryInterval, final int errorSampleRate, final int warnSampleRate) {
+        return Settings.builder()
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_SUMMARY_INTERVAL, summaryInterval)
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_ERROR_STACKTRACE_SAMPLE_RATE, errorSampleRate)
+                .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_FAILURE_LOG_WARN_STACKTRACE_SAMPLE_RATE, warnSampleRate)
+                .build();
+    }
+
+    private static final class RecordingAppender extends AbstractAppender {
+
+        private final List<LogEvent> events = new CopyOnWriteArrayList<>();
+
+        RecordingAppender() {
+            super("recording", null, null);
+        }
+
+        @Override
+        public void append(LogEvent event) {
+            events.add(event.toImmutable());
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Portions Copyright 2019 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.amazon.opendistroforelasticsearch.security.ssl;
+
+import io.netty.channel.Channel;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.local.LocalChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslHandler;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.http.HttpServerTransport.Dispatcher;
+import org.elasticsearch.http.netty4.Netty4HttpRequest;
+import org.elasticsearch.rest.AbstractRestChannel;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazon.opendistroforelasticsearch.security.ssl.http.netty.ValidatingDispatcher;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.RevocationStore;
+import com.amazon.opendistroforelasticsearch.security.ssl.util.SSLConfigConstants;
+
+public class ValidatingDispatcherTest {
+
+    private final Settings settings = Settings.builder()
+            .put("node.name", "validating_dispatcher_test")
+            .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_ENABLED, true)
+            .put(SSLConfigConstants.OPENDISTRO_SECURITY_SSL_HTTP_ASYNC_VALIDATION_TIMEOUT, "200ms")
+            .build();
+    
+    private final AtomicInteger dispatched = new AtomicInteger();
+    private final AtomicInteger dispatchedOnEventLoop = new AtomicInteger();
+    private final DefaultEventLoopGroup eventLoopGroup = new DefaultEventLoopGroup(1);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private ThreadPool threadPool;
+    private ValidatingDispatcher dispatcher;
+    
+    @Before
+    public void setup() {
+        //one validation thread and one queue slot, so that the tests can saturate the pool
+        threadPool = new ThreadPool(settings, new FixedExecutorBuilder(settings, ValidatingDispatcher.VALIDATION_THREAD_POOL_NAME, 1, 1));
+        dispatcher = new ValidatingDispatcher(threadPool.getThreadContext(), new Dispatcher() {
+            
+            @Override
+            public void dispatchRequest(RestRequest request, RestChannel channel, ThreadContext threadContext) {
+                dispatched.incrementAndGet();
+                if(((Netty4HttpRequest) request).getChannel().eventLoop().inEventLoop()) {
+                    dispatchedOnEventLoop.incrementAndGet();
+                }
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, ""));
+            }
+            
+            @Override
+            public void dispatchBadRequest(RestRequest request, RestChannel channel, ThreadContext threadContext, Throwable cause) {
+                Assert.fail();
+            }
+        }, settings, null, new SslExceptionHandler() {}, threadPool);
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        unblock.countDown();
+        
+        if(threadPool != null) {
+            ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+        }
+        
+        eventLoopGroup.shutdownGracefully(0, 10, TimeUnit.SECONDS).sync();
+    }
+    
+    @Test
+    public void testSuccess() throws Exception {
+        final Channel nettyChannel = newChannel(false);
+        
+        Assert.assertEquals(RestStatus.OK, dispatch(nettyChannel).get(10, TimeUnit.SECONDS).status());
+        Assert.assertEquals(1, dispatched.get());
+        //handed back from the validation thread to the network thread of the connection
+        Assert.assertEquals(1, dispatchedOnEventLoop.get());
+        
+        //validated connection, dispatched on the calling thread
+        final CompletableFuture<RestResponse> response = dispatch(nettyChannel);
+        Assert.assertTrue(response.isDone());
+        Assert.assertEquals(RestStatus.OK, response.get().status());
+        Assert.assertEquals(2, dispatched.get());
+    }
+    
+    @Test
+    public void testRevalidationAfterRevocationChange() throws Exception {
+        final Channel nettyChannel = newChannel(false);
+        
+        Assert.assertEquals(RestStatus.OK, dispatch(nettyChannel).get(10, TimeUnit.SECONDS).status());
+        
+        //the cached result is outdated, so the request waits for a new validation
+        block(1);
+        RevocationStore.getDefault().incrementGeneration();
+        final CompletableFuture<RestResponse> response = dispatch(nettyChannel);
+        Assert.assertFalse(response.isDone());
+        
+        unblock.countDown();
+        Assert.assertEquals(RestStatus.OK, response.get(10, TimeUnit.SECONDS).status());
+        Assert.assertEquals(2, dispatched.get());
+        
+        //validated with the current generation
+        Assert.assertTrue(dispatch(nettyChannel).isDone());
+        Assert.assertEquals(3, dispatched.get());
+    }
+    
+    @Test
+    public void testFailure() throws Exception {
+        final Channel nettyChannel = newChannel(true);
+        
+        Assert.assertNotEquals(RestStatus.OK, dispatch(nettyChannel).get(10, TimeUnit.SECONDS).status());
+        
+        //failed validation of the connection, answered on the calling thread
+        final CompletableFuture<RestResponse> response = dispatch(nettyChannel);
+        Assert.assertTrue(response.isDone());
+        Assert.assertNotEquals(RestStatus.OK, response.get().status());
+        Assert.assertEquals(0, dispatched.get());
+    }
+    
+    @Test
+    public void testTimeout() throws Exception {
+        block(1);
+        
+        final CompletableFuture<RestResponse> response = dispatch(newChannel(false));
+        Assert.assertEquals(RestStatus.SERVICE_UNAVAILABLE, response.get(10, TimeUnit.SECONDS).status());
+        
+        //validation completes after the timeout, the request must not be dispatched anymore
+        unblock.countDown();
+        Thread.sleep(100);
+        Assert.assertEquals(0, dispatched.get());
+    }
+    
+    @Test
+    public void testRejection() throws Exception {
+        block(2);
+        
+        final Channel nettyChannel = newChannel(false);
+        final CompletableFuture<RestResponse> response = dispatch(nettyChannel);
+        Assert.assertTrue(response.isDone());
+        Assert.assertEquals(RestStatus.TOO_MANY_REQUESTS, response.get().status());
+        Assert.assertEquals(0, dispatched.get());
+        
+        //the next request of the connection tries again
+        unblock.countDown();
+        Assert.assertEquals(RestStatus.OK, dispatch(nettyChannel).get(10, TimeUnit.SECONDS).status());
+        Assert.assertEquals(1, dispatched.get());
+    }
+    
+    private void block(final int tasks) throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        
+        for(int i = 0; i < tasks; i++) {
+            threadPool.executor(ValidatingDispatcher.VALIDATION_THREAD_POOL_NAME).execute(() -> {
+                running.countDown();
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        
+        Assert.assertTrue(running.await(10, TimeUnit.SECONDS));
+    }
+    
+    private CompletableFuture<RestResponse> dispatch(final Channel nettyChannel) {
+        final RestRequest request = new Netty4HttpRequest(NamedXContentRegistry.EMPTY,
+                new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/"), nettyChannel);
+        final RecordingChannel channel = new RecordingChannel(request);
+        dispatcher.dispatchRequest(request, channel, threadPool.getThreadContext());
+        return channel.response;
+    }
+    
+    private Channel newChannel(final boolean needClientAuth) throws Exception {
+        //no handshake takes place, the session has no peer certificates
+        final SSLEngine engine = SSLContext.getDefault().createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setNeedClientAuth(needClientAuth);
+        
+        //never connected, but registered with an event loop to dispatch on
+        final Channel nettyChannel = new LocalChannel();
+        nettyChannel.pipeline().addLast("ssl_http", new SslHandler(engine));
+        eventLoopGroup.register(nettyChannel).sync();
+        return nettyChannel;
+    }
+    
+    private static final class RecordingChannel extends AbstractRestChannel {
+        
+        private final CompletableFuture<RestResponse> response = new CompletableFuture<>();
+        
+        RecordingChannel(final RestRequest request) {
+            super(request, false);
+        }
+        
+        @Override
+        public void sendResponse(RestResponse response) {
+            this.response.complete(response);
+        }
+    }
+}